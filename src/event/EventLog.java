@@ -0,0 +1,512 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+package event;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+
+/**
+ * EventLog is a disk-backed store for the events of a simulation run, used by output formats which need all
+ * events sorted by start time or grouped by node. The attributes of the events are kept in primitive columns
+ * (time, duration, node, type, x, y, toX, toY, velocity). Events are collected in a buffer of fixed size; a
+ * full buffer is sorted and written to a temporary file (run). When all events have been added, the runs are
+ * merged into sorted segments which are memory-mapped for reading, so the heap usage does not depend on the
+ * number of events. Sorting is stable: events with the same key keep the order in which they were added.
+ */
+public class EventLog implements EventSink {
+
+	/** events are sorted by start time */
+	public static final int BY_TIME = 0;
+	/** events are sorted by node identifier and start time */
+	public static final int BY_NODE = 1;
+
+	/** default number of events per buffer and segment */
+	public static final int SEGMENT_SIZE = 1<<18;
+
+	/** size of an event in a segment file in bytes */
+	static final int RECORD_BYTES = 7*8 + 2*4;
+
+
+	/**
+	 * Event read from the log
+	 */
+	public static class Record {
+		/** start time of the event */
+		public double time = 0;
+		/** duration of the event */
+		public double duration = 0;
+		/** node identifier */
+		public int node = 0;
+		/** type of the event (see Event) */
+		public int type = -1;
+		/** position at the start of the event */
+		public double x = 0;
+		public double y = 0;
+		/** position at the end of the event (equals the start position unless the event is a movement) */
+		public double toX = 0;
+		public double toY = 0;
+		/** velocity of a movement */
+		public double velocity = 0;
+	}
+
+
+	/**
+	 * Sorted block of events, either in memory or memory-mapped from a file
+	 */
+	static class Segment {
+		int count;
+		DoubleBuffer time, duration, x, y, toX, toY, velocity;
+		IntBuffer node, type;
+		File file;
+
+		/**
+		 * Creates a segment from the columns of a buffer
+		 */
+		Segment(Columns columns) {
+			count = columns.count;
+			time = DoubleBuffer.wrap(columns.time, 0, count);
+			duration = DoubleBuffer.wrap(columns.duration, 0, count);
+			node = IntBuffer.wrap(columns.node, 0, count);
+			type = IntBuffer.wrap(columns.type, 0, count);
+			x = DoubleBuffer.wrap(columns.x, 0, count);
+			y = DoubleBuffer.wrap(columns.y, 0, count);
+			toX = DoubleBuffer.wrap(columns.toX, 0, count);
+			toY = DoubleBuffer.wrap(columns.toY, 0, count);
+			velocity = DoubleBuffer.wrap(columns.velocity, 0, count);
+		}
+
+		/**
+		 * Maps a segment file written by Columns.write()
+		 */
+		Segment(File file, int count) throws IOException {
+			this.file = file;
+			this.count = count;
+			try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+				ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, (long)count*RECORD_BYTES);
+				int offset = 0;
+				time = buffer.slice(offset, 8*count).asDoubleBuffer(); offset+=8*count;
+				duration = buffer.slice(offset, 8*count).asDoubleBuffer(); offset+=8*count;
+				node = buffer.slice(offset, 4*count).asIntBuffer(); offset+=4*count;
+				type = buffer.slice(offset, 4*count).asIntBuffer(); offset+=4*count;
+				x = buffer.slice(offset, 8*count).asDoubleBuffer(); offset+=8*count;
+				y = buffer.slice(offset, 8*count).asDoubleBuffer(); offset+=8*count;
+				toX = buffer.slice(offset, 8*count).asDoubleBuffer(); offset+=8*count;
+				toY = buffer.slice(offset, 8*count).asDoubleBuffer(); offset+=8*count;
+				velocity = buffer.slice(offset, 8*count).asDoubleBuffer();
+			}
+		}
+
+		void read(int index, Record record) {
+			record.time = time.get(index);
+			record.duration = duration.get(index);
+			record.node = node.get(index);
+			record.type = type.get(index);
+			record.x = x.get(index);
+			record.y = y.get(index);
+			record.toX = toX.get(index);
+			record.toY = toY.get(index);
+			record.velocity = velocity.get(index);
+		}
+	}
+
+
+	/**
+	 * Buffer of events in primitive columns
+	 */
+	static class Columns {
+		int count = 0;
+		double[] time, duration, x, y, toX, toY, velocity;
+		int[] node, type;
+
+		Columns(int capacity) {
+			time = new double[capacity];
+			duration = new double[capacity];
+			node = new int[capacity];
+			type = new int[capacity];
+			x = new double[capacity];
+			y = new double[capacity];
+			toX = new double[capacity];
+			toY = new double[capacity];
+			velocity = new double[capacity];
+		}
+
+		void add(double time, double duration, int node, int type, double x, double y, double toX, double toY, double velocity) {
+			this.time[count] = time;
+			this.duration[count] = duration;
+			this.node[count] = node;
+			this.type[count] = type;
+			this.x[count] = x;
+			this.y[count] = y;
+			this.toX[count] = toX;
+			this.toY[count] = toY;
+			this.velocity[count] = velocity;
+			count++;
+		}
+
+		void add(Record record) {
+			add(record.time, record.duration, record.node, record.type, record.x, record.y, record.toX, record.toY, record.velocity);
+		}
+
+		/**
+		 * Reorders the columns
+		 * @param order Indices of the events in their new order
+		 */
+		void permute(int[] order) {
+			time = permute(time, order);
+			duration = permute(duration, order);
+			node = permute(node, order);
+			type = permute(type, order);
+			x = permute(x, order);
+			y = permute(y, order);
+			toX = permute(toX, order);
+			toY = permute(toY, order);
+			velocity = permute(velocity, order);
+		}
+
+		double[] permute(double[] column, int[] order) {
+			double[] result = new double[column.length];
+			for (int i=0; i<count; i++) result[i] = column[order[i]];
+			return result;
+		}
+
+		int[] permute(int[] column, int[] order) {
+			int[] result = new int[column.length];
+			for (int i=0; i<count; i++) result[i] = column[order[i]];
+			return result;
+		}
+
+		/**
+		 * Writes the columns to a file (one column after the other)
+		 */
+		void write(File file) throws IOException {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1<<16))) {
+				for (int i=0; i<count; i++) out.writeDouble(time[i]);
+				for (int i=0; i<count; i++) out.writeDouble(duration[i]);
+				for (int i=0; i<count; i++) out.writeInt(node[i]);
+				for (int i=0; i<count; i++) out.writeInt(type[i]);
+				for (int i=0; i<count; i++) out.writeDouble(x[i]);
+				for (int i=0; i<count; i++) out.writeDouble(y[i]);
+				for (int i=0; i<count; i++) out.writeDouble(toX[i]);
+				for (int i=0; i<count; i++) out.writeDouble(toY[i]);
+				for (int i=0; i<count; i++) out.writeDouble(velocity[i]);
+			}
+		}
+	}
+
+
+	/**
+	 * Sequential reader of a segment used during the merge
+	 */
+	static class RunCursor {
+		Segment segment;
+		int run;
+		int position = 0;
+		Record record = new Record();
+
+		RunCursor(Segment segment, int run) {
+			this.segment = segment;
+			this.run = run;
+		}
+
+		boolean next() {
+			if (position>=segment.count) return false;
+			segment.read(position++, record);
+			return true;
+		}
+	}
+
+
+	/**
+	 * Reads the events of the log in sorted order
+	 */
+	public class Cursor extends Record {
+		long position = 0;
+
+		/**
+		 * Reads the next event
+		 * @return False if all events have been read
+		 */
+		public boolean next() {
+			if (position>=size) return false;
+			seek(position);
+			return true;
+		}
+
+		/**
+		 * Reads the event at the given position. The next call of next() reads the following event.
+		 * @param index Position of the event in the sorted log
+		 */
+		public void seek(long index) {
+			segments.get((int)(index/segmentSize)).read((int)(index%segmentSize), this);
+			position = index+1;
+		}
+	}
+
+
+	/** sort order (BY_TIME or BY_NODE) */
+	int order = BY_TIME;
+	/** number of events per buffer and segment */
+	int segmentSize = SEGMENT_SIZE;
+	/** directory for the temporary files */
+	File directory = null;
+	/** events not yet written to a run */
+	Columns buffer = null;
+	/** sorted runs written to temporary files */
+	ArrayList<Segment> runs = new ArrayList<Segment>();
+	/** sorted segments (available after sort()) */
+	ArrayList<Segment> segments = null;
+	/** total number of events */
+	long size = 0;
+
+
+	/**
+	 * Creates an event log
+	 * @param directory Directory for the temporary files
+	 * @param order Sort order (BY_TIME or BY_NODE)
+	 */
+	public EventLog(File directory, int order) {
+		this(directory, order, SEGMENT_SIZE);
+	}
+
+	/**
+	 * Creates an event log
+	 * @param directory Directory for the temporary files
+	 * @param order Sort order (BY_TIME or BY_NODE)
+	 * @param segmentSize Number of events kept in memory before they are written to a file
+	 */
+	public EventLog(File directory, int order, int segmentSize) {
+		this.directory = directory;
+		this.order = order;
+		this.segmentSize = segmentSize;
+		buffer = new Columns(segmentSize);
+	}
+
+
+	public void addEvent(Event event) {
+		if (event.type==Event.MOVE) {
+			Move move = (Move)event;
+			add(move.time, move.duration, move.node.id, move.type, move.x, move.y, move.moveToX, move.moveToY, move.velocity);
+		} else {
+			add(event.time, event.duration, event.node.id, event.type, event.x, event.y, event.x, event.y, 0);
+		}
+	}
+
+	/**
+	 * Adds an event
+	 * @param time Start time
+	 * @param duration Duration
+	 * @param node Node identifier
+	 * @param type Type of the event
+	 * @param x X-coordinate at the start of the event
+	 * @param y Y-coordinate at the start of the event
+	 * @param toX X-coordinate at the end of the event
+	 * @param toY Y-coordinate at the end of the event
+	 * @param velocity Velocity
+	 */
+	public void add(double time, double duration, int node, int type, double x, double y, double toX, double toY, double velocity) {
+		if (segments!=null) throw new IllegalStateException("Events cannot be added to a sorted event log");
+		buffer.add(time, duration, node, type, x, y, toX, toY, velocity);
+		size++;
+		if (buffer.count==segmentSize) {
+			// write a sorted run
+			sortBuffer();
+			runs.add(spill(buffer));
+			buffer.count = 0;
+		}
+	}
+
+	/**
+	 * Returns the number of events
+	 * @return Number of events
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Sorts all events. Must be called after the last event has been added and before the events are read.
+	 */
+	public void sort() {
+		if (segments!=null) return;
+		segments = new ArrayList<Segment>();
+		sortBuffer();
+
+		if (runs.isEmpty()) {
+			// all events fit into memory
+			if (buffer.count>0) segments.add(new Segment(buffer));
+			return;
+		}
+		if (buffer.count>0) runs.add(spill(buffer));
+
+		// merge the runs into segments
+		PriorityQueue<RunCursor> queue = new PriorityQueue<RunCursor>(runs.size(), new Comparator<RunCursor>() {
+			public int compare(RunCursor cursor1, RunCursor cursor2) {
+				int result = compareRecords(cursor1.record, cursor2.record);
+				return (result!=0) ? result : cursor1.run - cursor2.run;
+			}
+		});
+		for (int i=0; i<runs.size(); i++) {
+			RunCursor cursor = new RunCursor(runs.get(i), i);
+			if (cursor.next()) queue.add(cursor);
+		}
+		Columns output = new Columns(segmentSize);
+		buffer = null;
+		while (!queue.isEmpty()) {
+			RunCursor cursor = queue.poll();
+			output.add(cursor.record);
+			if (output.count==segmentSize) {
+				segments.add(spill(output));
+				output.count = 0;
+			}
+			if (cursor.next()) queue.add(cursor);
+		}
+		if (output.count>0) segments.add(spill(output));
+
+		// remove the runs
+		for (int i=0; i<runs.size(); i++) runs.get(i).file.delete();
+		runs.clear();
+	}
+
+	/**
+	 * Returns a cursor reading the sorted events from the beginning
+	 * @return Cursor
+	 */
+	public Cursor cursor() {
+		sort();
+		return new Cursor();
+	}
+
+	/**
+	 * Removes the temporary files
+	 */
+	public void close() {
+		ArrayList<Segment> all = new ArrayList<Segment>(runs);
+		if (segments!=null) all.addAll(segments);
+		for (int i=0; i<all.size(); i++) {
+			if (all.get(i).file!=null) all.get(i).file.delete();
+		}
+		runs.clear();
+		segments = new ArrayList<Segment>();
+		size = 0;
+	}
+
+
+	/**
+	 * Compares two events according to the sort order of this log
+	 */
+	int compareRecords(Record record1, Record record2) {
+		if (order==BY_NODE && record1.node!=record2.node) return Integer.compare(record1.node, record2.node);
+		return Double.compare(record1.time, record2.time);
+	}
+
+	/**
+	 * Compares two events of the buffer according to the sort order of this log
+	 */
+	int compareBuffered(int index1, int index2) {
+		if (order==BY_NODE && buffer.node[index1]!=buffer.node[index2]) return Integer.compare(buffer.node[index1], buffer.node[index2]);
+		return Double.compare(buffer.time[index1], buffer.time[index2]);
+	}
+
+	/**
+	 * Sorts the buffer (stable merge sort of the event indices)
+	 */
+	void sortBuffer() {
+		int count = buffer.count;
+		int[] index = new int[count];
+		int[] temp = new int[count];
+		for (int i=0; i<count; i++) index[i] = i;
+
+		boolean sorted = true;
+		for (int i=1; i<count && sorted; i++) sorted = compareBuffered(i-1, i)<=0;
+		if (sorted) return;
+
+		if (order==BY_NODE && groupByNode(index)) {
+			buffer.permute(index);
+			return;
+		}
+
+		for (int width=1; width<count; width*=2) {
+			for (int low=0; low<count; low+=2*width) {
+				int middle = Math.min(low+width, count);
+				int high = Math.min(low+2*width, count);
+				int i = low, j = middle, k = low;
+				while (i<middle && j<high) temp[k++] = (compareBuffered(index[j], index[i])<0) ? index[j++] : index[i++];
+				while (i<middle) temp[k++] = index[i++];
+				while (j<high) temp[k++] = index[j++];
+			}
+			int[] swap = index; index = temp; temp = swap;
+		}
+		buffer.permute(index);
+	}
+
+	/**
+	 * Groups the buffered events by node (counting sort by node identifier). Each node generates its events
+	 * in time order, so if the events were added in time order, concatenating the sequences of the nodes
+	 * yields the order by node and time without comparing the events.
+	 * @param index Array receiving the indices of the events in their new order
+	 * @return False if the events were not added in time order or the node identifiers are too sparse
+	 */
+	boolean groupByNode(int[] index) {
+		int count = buffer.count;
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		for (int i=0; i<count; i++) {
+			if (i>0 && Double.compare(buffer.time[i-1], buffer.time[i])>0) return false;
+			min = Math.min(min, buffer.node[i]);
+			max = Math.max(max, buffer.node[i]);
+		}
+		long range = (long)max - min + 1;
+		if (range>4L*count + 1024) return false;
+
+		// start position of the sequence of each node
+		int[] start = new int[(int)range + 1];
+		for (int i=0; i<count; i++) start[buffer.node[i]-min+1]++;
+		for (int i=1; i<start.length; i++) start[i]+=start[i-1];
+		for (int i=0; i<count; i++) index[start[buffer.node[i]-min]++] = i;
+		return true;
+	}
+
+	/**
+	 * Writes sorted columns to a temporary file and maps the file
+	 */
+	Segment spill(Columns columns) {
+		try {
+			File file = File.createTempFile("events", ".log", directory);
+			file.deleteOnExit();
+			columns.write(file);
+			return new Segment(file, columns.count);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Error writing event log: " + e.getMessage(), e);
+		}
+	}
+
+}
@@ -0,0 +1,296 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+package event;
+
+import java.util.*;
+
+import mobility.MobileNode;
+
+
+/**
+ * EventReorderBuffer delivers the events of a simulation run to event sinks in the order of their start time.
+ * Nodes generate their events out of order (e.g. events starting in the future, or output samples covering
+ * several simulation steps), so events are held back until the simulation has advanced far enough that no
+ * earlier event can be generated anymore. Only the events of this horizon are kept in memory.
+ * Each node generates its own events in time order, so the held back events are kept in a journal per node,
+ * and the journals are merged with a heap ordered by their first event (k-way merge over the nodes).
+ * The journals store the attributes of the events in primitive arrays, the event objects passed to the sinks
+ * are reused for every delivered event.
+ */
+public class EventReorderBuffer {
+
+	/**
+	 * Held back events of a node in time order, events with the same start time in generation order
+	 */
+	static class Journal {
+		MobileNode node;
+		/** first and behind the last event */
+		int head = 0;
+		int tail = 0;
+		long[] sequence = new long[4];
+		double[] time = new double[4];
+		double[] duration = new double[4];
+		int[] type = new int[4];
+		double[] x = new double[4];
+		double[] y = new double[4];
+		double[] toX = new double[4];
+		double[] toY = new double[4];
+		double[] velocity = new double[4];
+
+		Journal(MobileNode node) {
+			this.node = node;
+		}
+
+		boolean isEmpty() {
+			return head==tail;
+		}
+
+		/**
+		 * Compares the first events of two journals
+		 */
+		int compareTo(Journal other) {
+			int result = Double.compare(time[head], other.time[other.head]);
+			if (result!=0) return result;
+			return Long.compare(sequence[head], other.sequence[other.head]);
+		}
+
+		/**
+		 * Indicates whether an event would precede the first event of this journal
+		 */
+		boolean precedes(double eventTime, long eventSequence) {
+			int result = Double.compare(eventTime, time[head]);
+			return result<0 || (result==0 && eventSequence<sequence[head]);
+		}
+
+		/**
+		 * Adds an event, usually at the end of the journal
+		 */
+		void add(Event event, long eventSequence) {
+			if (tail==time.length) {
+				if (head>0) {
+					for (int i=head; i<tail; i++) copy(i, i-head);
+					tail-=head;
+					head = 0;
+				} else {
+					int capacity = 2*time.length;
+					sequence = Arrays.copyOf(sequence, capacity);
+					time = Arrays.copyOf(time, capacity);
+					duration = Arrays.copyOf(duration, capacity);
+					type = Arrays.copyOf(type, capacity);
+					x = Arrays.copyOf(x, capacity);
+					y = Arrays.copyOf(y, capacity);
+					toX = Arrays.copyOf(toX, capacity);
+					toY = Arrays.copyOf(toY, capacity);
+					velocity = Arrays.copyOf(velocity, capacity);
+				}
+			}
+			// the node has generated an event which starts before one of its earlier events
+			int position = tail;
+			while (position>head && (Double.compare(time[position-1], event.time)>0 || (time[position-1]==event.time && sequence[position-1]>eventSequence))) {
+				copy(position-1, position);
+				position--;
+			}
+
+			sequence[position] = eventSequence;
+			time[position] = event.time;
+			duration[position] = event.duration;
+			type[position] = event.type;
+			x[position] = event.x;
+			y[position] = event.y;
+			if (event.type==Event.MOVE) {
+				Move move = (Move)event;
+				toX[position] = move.moveToX;
+				toY[position] = move.moveToY;
+				velocity[position] = move.velocity;
+			}
+			tail++;
+		}
+
+		void copy(int from, int to) {
+			sequence[to] = sequence[from];
+			time[to] = time[from];
+			duration[to] = duration[from];
+			type[to] = type[from];
+			x[to] = x[from];
+			y[to] = y[from];
+			toX[to] = toX[from];
+			toY[to] = toY[from];
+			velocity[to] = velocity[from];
+		}
+	}
+
+	/** sinks receiving the ordered events */
+	ArrayList<EventSink> sinks = new ArrayList<EventSink>();
+	/** journals indexed by node identifier */
+	Journal[] journals = new Journal[0];
+	/** non-empty journals ordered by their first event */
+	PriorityQueue<Journal> heads = new PriorityQueue<Journal>(64, new Comparator<Journal>() {
+		public int compare(Journal journal1, Journal journal2) {
+			return journal1.compareTo(journal2);
+		}
+	});
+	/** event objects passed to the sinks */
+	Move move = new Move(null, 0, 0, 0, 0, 0, 0, 0);
+	Pause pause = new Pause(null, 0, 0, 0, 0);
+	Join join = new Join(null, 0, 0, 0);
+	Leave leave = new Leave(null, 0, 0, 0);
+	/** number of events waiting for delivery */
+	int size = 0;
+	/** number of events generated so far */
+	long sequence = 0;
+	/** all events starting before this time have been delivered */
+	double watermark = Double.NEGATIVE_INFINITY;
+	/** number of events which were generated after later events had already been delivered */
+	long lateEvents = 0;
+
+
+	/**
+	 * Registers a sink
+	 * @param sink Event sink
+	 */
+	public void addSink(EventSink sink) {
+		sinks.add(sink);
+	}
+
+	/**
+	 * Returns whether any sink is registered
+	 * @return True if at least one sink is registered
+	 */
+	public boolean hasSinks() {
+		return !sinks.isEmpty();
+	}
+
+	/**
+	 * Adds a newly generated event
+	 * @param event Event
+	 */
+	public void add(Event event) {
+		if (event.time<watermark) {
+			// later events have already been delivered, deliver this event immediately
+			lateEvents++;
+			deliver(event);
+		} else {
+			int id = event.node.id;
+			if (id>=journals.length) journals = Arrays.copyOf(journals, Math.max(2*journals.length, id+1));
+			Journal journal = journals[id];
+			if (journal==null) journal = journals[id] = new Journal(event.node);
+
+			if (journal.isEmpty()) {
+				journal.add(event, sequence);
+				heads.add(journal);
+			} else if (journal.precedes(event.time, sequence)) {
+				// new first event, the position of the journal in the heap changes
+				heads.remove(journal);
+				journal.add(event, sequence);
+				heads.add(journal);
+			} else {
+				journal.add(event, sequence);
+			}
+			size++;
+		}
+		sequence++;
+	}
+
+	/**
+	 * Delivers all events starting before the given time. The caller guarantees that no events starting before
+	 * this time will be generated anymore.
+	 * @param time Watermark time
+	 */
+	public void release(double time) {
+		if (time>watermark) watermark = time;
+		while (!heads.isEmpty() && heads.peek().time[heads.peek().head]<watermark) {
+			deliver(next());
+		}
+	}
+
+	/**
+	 * Delivers all remaining events at the end of the simulation
+	 */
+	public void close() {
+		while (!heads.isEmpty()) {
+			Event event = next();
+			if (event.time>watermark) watermark = event.time;
+			deliver(event);
+		}
+		if (lateEvents>0) {
+			System.err.println("Warning: " + lateEvents + " events were generated after later events had been written and are out of order.");
+		}
+	}
+
+	/**
+	 * Returns the number of events waiting for delivery
+	 * @return Number of events
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes the earliest event from the journals
+	 * @return Event object filled with the attributes of the event (reused for the next event)
+	 */
+	Event next() {
+		Journal journal = heads.poll();
+		int i = journal.head;
+		Event event;
+		if (journal.type[i]==Event.MOVE) {
+			move.moveToX = journal.toX[i];
+			move.moveToY = journal.toY[i];
+			move.velocity = journal.velocity[i];
+			move.direction = Double.NaN;
+			event = move;
+		} else if (journal.type[i]==Event.PAUSE) {
+			event = pause;
+		} else if (journal.type[i]==Event.JOIN) {
+			event = join;
+		} else {
+			event = leave;
+		}
+		event.node = journal.node;
+		event.time = journal.time[i];
+		event.duration = journal.duration[i];
+		event.x = journal.x[i];
+		event.y = journal.y[i];
+
+		journal.head++;
+		if (journal.isEmpty()) journal.head = journal.tail = 0;
+		else heads.add(journal);
+		size--;
+		return event;
+	}
+
+	/**
+	 * Passes an event to all sinks
+	 * @param event Event
+	 */
+	void deliver(Event event) {
+		for (int i=0; i<sinks.size(); i++) sinks.get(i).addEvent(event);
+	}
+
+}
@@ -48,10 +48,8 @@ public class Move extends Event {
 	public double moveToY = 0;
 	/** velocity of the movement */
 	public double velocity = 0;
-	/** direction of the movement (rad) */
-	public double direction = 0;
-	/** distance of between start and end point */
-	public double distance = 0;
+	/** direction of the movement (rad), calculated on first use (NaN if not yet calculated) */
+	double direction = Double.NaN;
 	
 	/**
 	 * Constructs a MOVE event
@@ -71,9 +69,7 @@ public class Move extends Event {
 		moveToX = x2;
 		moveToY = y2;
 		this.velocity = velocity;
-		direction = Math.atan2(moveToY-y, moveToX-x);
-		distance = Math.sqrt((x1-x2)*(x1-x2) + (y1-y2)*(y1-y2));
-		duration = distance/velocity;
+		duration = getDistance()/velocity;
 		type = Event.MOVE;
 	}
 	
@@ -96,12 +92,49 @@ public class Move extends Event {
 		moveToX = x2;
 		moveToY = y2;
 		this.velocity = velocity;
-		direction = Math.atan2(moveToY-y, moveToX-x);
-		distance = Math.sqrt((x1-x2)*(x1-x2) + (y1-y2)*(y1-y2));
 		this.duration = duration;
 		type = Event.MOVE;
 	}
 	
+	/**
+	 * Sets all attributes of the event, used to reuse a MOVE event which has been consumed
+	 * @param node Node related to this event
+	 * @param time Event start time
+	 * @param x1 X-coordinate of the start position of the movement
+	 * @param y1 Y-coordinate of the start position of the movement
+	 * @param x2 X-coordinate of the end position of the movement
+	 * @param y2 Y-coordinate of the end position of the movement
+	 * @param duration Movement duration
+	 */
+	public void set(MobileNode node, double time, double x1, double y1, double x2, double y2, double velocity, double duration) {
+		this.node = node;
+		this.time = time;
+		x = x1;
+		y = y1;
+		moveToX = x2;
+		moveToY = y2;
+		this.velocity = velocity;
+		this.duration = duration;
+		direction = Double.NaN;
+	}
+	
+	/**
+	 * Returns the direction of the movement
+	 * @return Direction (rad)
+	 */
+	public double getDirection() {
+		if (Double.isNaN(direction)) direction = Math.atan2(moveToY-y, moveToX-x);
+		return direction;
+	}
+	
+	/**
+	 * Returns the distance between start and end point
+	 * @return Distance
+	 */
+	public double getDistance() {
+		return Math.sqrt((x-moveToX)*(x-moveToX) + (y-moveToY)*(y-moveToY));
+	}
+	
 		
 	public String toString() {
 		return node.id + " time=" + time + ", duration=" + duration + " move from (" + x + "," + y + ") to (" + moveToX + "," + moveToY + ")";
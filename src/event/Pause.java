@@ -54,6 +54,22 @@ public class Pause extends Event {
 		type = Event.PAUSE;
 	}
 	
+	/**
+	 * Sets all attributes of the event, used to reuse a PAUSE event which has been consumed
+	 * @param node Node related to this event
+	 * @param time Event start time
+	 * @param duration Event duration
+	 * @param x X-coordinate of the node position
+	 * @param y Y-coordinate of the node position
+	 */
+	public void set(MobileNode node, double time, double duration, double x, double y) {
+		this.node = node;
+		this.time = time;
+		this.duration = duration;
+		this.x = x;
+		this.y = y;
+	}
+	
 	public String toString() {
 		return "time=" + time + ", duration=" + duration + " pause at (" + x + "," + y + ")";
 	}
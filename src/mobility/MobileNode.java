@@ -37,6 +37,7 @@ import java.util.*;
 
 import event.*;
 import model.*;
+import probability.RandomStreams;
 import simulator.Simulator;
 
 
@@ -57,21 +58,28 @@ public abstract class MobileNode extends GraphNode{
 	public double position = 0;
 	/** current road */
 	public RoadEdge road = null;
+	/** road whose occupancy list contains this node (maintained by RoadEdge) */
+	public RoadEdge occupiedRoad = null;
+	/** vehicle directly in front of this node on the occupied road */
+	public MobileNode leader = null;
+	/** vehicle directly behind this node on the occupied road */
+	public MobileNode follower = null;
 	/** current speed */
 	public double speed = 0;
 	/** current direction (if moving) */
 	public double direction = 0;
 	/** list with generated events for this node */
-	protected LinkedList<Event> events = new LinkedList<Event>();
+	protected ArrayDeque<Event> events = new ArrayDeque<Event>();
 	/** currently active event */
 	protected Event currentEvent = null;
 	/** last event in the event queue */
 	protected Event lastEvent = null;
 	/** end time of the last event in the queue */
 	protected double lastEventEndTime = 0;
+	/** consumed MOVE and PAUSE events which are reused by addMove and addPause */
+	ArrayList<Move> freeMoves = new ArrayList<Move>();
+	ArrayList<Pause> freePauses = new ArrayList<Pause>();
 	
-	/** table of contacts for this node */
-	public Hashtable<Integer, Double> contacts = new Hashtable<Integer, Double>();
 	/** set with current neighbors of this node */
 	public HashSet<MobileNode> currentNeighbors = new HashSet<MobileNode>();
 	/** number of new neighbors since the last sample time */
@@ -84,9 +92,11 @@ public abstract class MobileNode extends GraphNode{
 	/** time when this node left the simulation */
 	public double leaveTime = Double.POSITIVE_INFINITY;
 	
-	/** members used for the Dijkstra shortest path algorithm */
-	public int dijkstraCost = Integer.MAX_VALUE;
-	public boolean dijkstraVisited = false;
+	/** indicates that the events of this node are sampled at the output rate. The current position, speed and direction are then maintained by the mobility model and not taken from the events. */
+	public boolean sampledOutput = false;
+	
+	/** random number generator for the decisions of this node (stream derived from the simulation seed and the node id) */
+	public SplittableRandom rng = null;
 	
 	/**
 	 * Constructs a new Node
@@ -97,6 +107,7 @@ public abstract class MobileNode extends GraphNode{
 		this.id = id;
 		leaveTime = simulator.duration;
 		lastEventEndTime = 0;
+		rng = simulator.randomStreams.stream(RandomStreams.NODE, id);
 	}
 
 	protected MobileNode() {
@@ -140,6 +151,65 @@ public abstract class MobileNode extends GraphNode{
 		
 	}
 	
+	/**
+	 * Inserts a new MOVE event into the node's list of events. The event object is reused from a consumed
+	 * event of this node if possible, so the caller must not keep a reference to it.
+	 * @param time Event start time
+	 * @param x1 X-coordinate of the start position of the movement
+	 * @param y1 Y-coordinate of the start position of the movement
+	 * @param x2 X-coordinate of the end position of the movement
+	 * @param y2 Y-coordinate of the end position of the movement
+	 * @param velocity Velocity of the movement
+	 * @param duration Movement duration
+	 */
+	public void addMove(double time, double x1, double y1, double x2, double y2, double velocity, double duration) {
+		if (freeMoves.isEmpty()) {
+			addEvent(new Move(this, time, x1, y1, x2, y2, velocity, duration));
+		} else {
+			Move move = freeMoves.remove(freeMoves.size()-1);
+			move.set(this, time, x1, y1, x2, y2, velocity, duration);
+			addEvent(move);
+		}
+	}
+	
+	/**
+	 * Inserts a new MOVE event into the node's list of events, the duration is determined by the distance and
+	 * the velocity (see addMove with duration)
+	 */
+	public void addMove(double time, double x1, double y1, double x2, double y2, double velocity) {
+		double dx = x2 - x1;
+		double dy = y2 - y1;
+		addMove(time, x1, y1, x2, y2, velocity, Math.sqrt(dx*dx + dy*dy)/velocity);
+	}
+	
+	/**
+	 * Inserts a new PAUSE event into the node's list of events (see addMove)
+	 * @param time Event start time
+	 * @param duration Event duration
+	 * @param x X-coordinate of the node position
+	 * @param y Y-coordinate of the node position
+	 */
+	public void addPause(double time, double duration, double x, double y) {
+		if (freePauses.isEmpty()) {
+			addEvent(new Pause(this, time, duration, x, y));
+		} else {
+			Pause pause = freePauses.remove(freePauses.size()-1);
+			pause.set(this, time, duration, x, y);
+			addEvent(pause);
+		}
+	}
+	
+	/**
+	 * Keeps a consumed event for reuse. Events are not reused if they are stored by the simulator or still
+	 * referenced as the last event of the node, the reorder buffer and the event sinks copy the events.
+	 * @param event Consumed event (may be null)
+	 */
+	void recycle(Event event) {
+		if (event==null || event==lastEvent || simulator.storeEvents) return;
+		if (event.type==Event.MOVE) freeMoves.add((Move)event);
+		else if (event.type==Event.PAUSE) freePauses.add((Pause)event);
+	}
+	
 	/**
 	 * Prepares the node for the next simulation step.
 	 */
@@ -160,6 +230,7 @@ public abstract class MobileNode extends GraphNode{
 		while (firstEvent!=null && firstEvent.time<=simulator.time) {
 		
 			// proceed with the next event 
+			recycle(currentEvent);
 			currentEvent = events.poll();
 			
 			if (currentEvent.type==Event.JOIN) {
@@ -187,7 +258,9 @@ public abstract class MobileNode extends GraphNode{
 		
 		
 		// process current event
-		if (currentEvent.type==Event.MOVE) {
+		if (sampledOutput) {
+			// position, speed and direction are set by the mobility model, the events lag behind by up to one output step
+		} else if (currentEvent.type==Event.MOVE) {
 			// node is moving
 			
 			Move movement = (Move) currentEvent;
@@ -200,7 +273,7 @@ public abstract class MobileNode extends GraphNode{
 				x = fraction*(movement.moveToX-movement.x) + movement.x;
 				y = fraction*(movement.moveToY-movement.y) + movement.y;
 				speed = movement.velocity;
-				direction = movement.direction;
+				direction = movement.getDirection();
 			} else {
 				// node has reached the destination
 				x = movement.moveToX;
@@ -219,7 +292,10 @@ public abstract class MobileNode extends GraphNode{
 		}
 		
 		
-		if ((currentEvent.time + currentEvent.duration)<simulator.time) currentEvent = null;
+		if ((currentEvent.time + currentEvent.duration)<simulator.time) {
+			recycle(currentEvent);
+			currentEvent = null;
+		}
 		
 		return true;
 	};
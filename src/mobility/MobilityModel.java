@@ -52,4 +52,13 @@ public abstract class MobilityModel {
 	/** finish and clean-up */
 	public abstract void finish();
 	
+	/**
+	 * Returns an upper bound of the node speeds, i.e. no node moves farther than this speed times the step
+	 * in one simulation step
+	 * @return Maximum speed or Double.POSITIVE_INFINITY if the model does not bound the speed
+	 */
+	public double getMaxSpeed() {
+		return Double.POSITIVE_INFINITY;
+	}
+	
 }
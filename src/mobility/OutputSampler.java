@@ -0,0 +1,159 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+
+package mobility;
+
+import event.*;
+
+
+/**
+ * OutputSampler decouples the output sampling rate from the simulation step of a mobility model.
+ * The movement of a node is recorded for every simulation step, but MOVE and PAUSE events are only
+ * generated at the output sample times (multiples of the output step). The position of the node at
+ * an output sample time is interpolated between the positions at the enclosing simulation steps.
+ * As the events lag behind the simulation by up to one output step, the sampler sets the current position
+ * and direction of the node directly (the speed is maintained by the mobility model). The last partial
+ * output interval is generated by flush() at the end of the simulation.
+ */
+public class OutputSampler {
+
+	/** relative tolerance for matching output sample times with the end of a simulation step */
+	static final double EPSILON = 1e-9;
+
+	/** time between two output samples */
+	double outputStep = 1.0;
+	/** time of the first output sample */
+	double origin = 0;
+	/** number of output samples generated so far */
+	long sample = 0;
+	/** indicates that the first step has been recorded */
+	boolean started = false;
+
+	/** position at the last output sample time */
+	double sampleX = 0;
+	double sampleY = 0;
+	/** distance travelled since the last output sample time */
+	double distance = 0;
+	/** indicates that the node has moved since the last output sample time */
+	boolean moving = false;
+	/** end time and position of the last recorded step */
+	double end = 0;
+	double endX = 0;
+	double endY = 0;
+
+
+	/**
+	 * Creates a sampler generating an event every output step
+	 * @param outputStep Time between two output samples
+	 */
+	public OutputSampler(double outputStep) {
+		this.outputStep = outputStep;
+	}
+
+	/**
+	 * Records the movement of a node during one simulation step and generates the events for all
+	 * output sample times within this step.
+	 * @param node Node
+	 * @param time Start time of the simulation step
+	 * @param step Duration of the simulation step
+	 * @param fromX X-coordinate at the start of the step
+	 * @param fromY Y-coordinate at the start of the step
+	 * @param toX X-coordinate at the end of the step
+	 * @param toY Y-coordinate at the end of the step
+	 * @param speed Speed during the step
+	 */
+	public void record(MobileNode node, double time, double step, double fromX, double fromY, double toX, double toY, double speed) {
+
+		// current state of the node (position at the start of the step, as with unsampled events)
+		node.x = fromX;
+		node.y = fromY;
+		node.direction = (toX!=fromX || toY!=fromY) ? Math.atan2(toY-fromY, toX-fromX) : 0;
+
+		if (!started) {
+			// first output sample at the start of this step
+			started = true;
+			origin = time;
+			sampleX = fromX;
+			sampleY = fromY;
+		}
+
+		end = time + step;
+		endX = toX;
+		endY = toY;
+		double done = 0;
+		double nextSample = origin + (sample+1)*outputStep;
+
+		while (nextSample<=end + EPSILON*outputStep) {
+
+			// interpolate the position at the output sample time
+			double fraction = Math.min(1, (nextSample - time)/step);
+			double x = fraction*(toX-fromX) + fromX;
+			double y = fraction*(toY-fromY) + fromY;
+			distance+=speed*(fraction-done)*step;
+			if (speed>0) moving = true;
+
+			double sampleTime = origin + sample*outputStep;
+			if (moving) node.addMove(sampleTime, sampleX, sampleY, x, y, distance/outputStep, outputStep);
+			else node.addPause(sampleTime, outputStep, x, y);
+
+			// start the next output interval
+			sample++;
+			sampleX = x;
+			sampleY = y;
+			distance = 0;
+			moving = false;
+			done = fraction;
+			nextSample = origin + (sample+1)*outputStep;
+		}
+
+		// remaining part of the step belongs to the next output interval
+		if (done<1) {
+			distance+=speed*(1-done)*step;
+			if (speed>0) moving = true;
+		}
+	}
+
+	/**
+	 * Generates the event for the last output interval if the recorded steps end before its output sample time
+	 * @param node Node
+	 */
+	public void flush(MobileNode node) {
+		double sampleTime = origin + sample*outputStep;
+		double duration = end - sampleTime;
+		if (!started || duration<=EPSILON*outputStep) return;
+		if (moving) node.addMove(sampleTime, sampleX, sampleY, endX, endY, distance/duration, duration);
+		else node.addPause(sampleTime, duration, endX, endY);
+		sample++;
+		sampleX = endX;
+		sampleY = endY;
+		distance = 0;
+		moving = false;
+	}
+
+}
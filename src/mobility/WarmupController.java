@@ -0,0 +1,245 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+
+package mobility;
+
+import java.util.*;
+
+import model.RoadEdge;
+import simulator.Simulator;
+
+
+/**
+ * WarmupController decides when the warm-up phase of a mobility model has reached a steady state.
+ * It tracks rolling statistics of the node population (mean speed, fraction of stopped vehicles and
+ * the distribution of vehicles over the roads) and ends the warm-up phase as soon as the averages of two
+ * consecutive windows differ by less than the configured tolerance. The length of the warm-up phase
+ * is bounded by a ceiling. Ceiling and window are given in simulated seconds and converted into steps
+ * with the step size of the simulation.
+ */
+public class WarmupController {
+
+	/** default maximum duration of the warm-up phase in seconds (length of the former fixed warm-up phase) */
+	public static final double DEFAULT_MAX_TIME = 4999;
+	/** default duration of one statistics window in seconds */
+	static final double DEFAULT_WINDOW_TIME = 100;
+	/** speed below which a vehicle is considered to be stopped */
+	static final double STOPPED_SPEED = 0.1;
+	/** number of bins of the road occupancy histogram (the last bin collects all higher values) */
+	static final int OCCUPANCY_BINS = 16;
+
+	/** nodes of the mobility model */
+	List<MobileNode> nodes = null;
+	/** roads of the mobility model */
+	List<RoadEdge> roads = null;
+	Simulator curSimulation;
+
+	/** maximum number of warm-up steps (WARMUP_MAX converted into steps) */
+	int maxSteps = 0;
+	/** number of steps in one statistics window (WARMUP_WINDOW converted into steps) */
+	int window = 0;
+	/** relative tolerance for the convergence test (0 disables the convergence test) */
+	double tolerance = 0;
+	/** number of warm-up steps performed so far */
+	int steps = 0;
+	/** indicates that the statistics have converged */
+	boolean converged = false;
+
+	/** accumulated mean speed of the current window */
+	double speedSum = 0;
+	/** accumulated fraction of stopped vehicles of the current window */
+	double stoppedSum = 0;
+	/** accumulated road occupancy histogram of the current window */
+	double[] occupancy = new double[OCCUPANCY_BINS];
+	/** number of samples in the current window */
+	int samples = 0;
+
+	/** mean speed of the previous window */
+	double lastSpeed = Double.NaN;
+	/** fraction of stopped vehicles of the previous window */
+	double lastStopped = Double.NaN;
+	/** normalized road occupancy histogram of the previous window */
+	double[] lastOccupancy = null;
+
+	/** scratch histogram for a single sample */
+	int[] histogram = new int[OCCUPANCY_BINS];
+
+
+	/**
+	 * Creates a warm-up controller and reads the parameters WARMUP_MAX, WARMUP_WINDOW and WARMUP_TOLERANCE.
+	 * @param simulator Simulator
+	 * @param nodes Nodes of the mobility model
+	 * @param roads Roads of the mobility model, null if the model has no road network
+	 * @param defaultMaxTime Maximum duration of the warm-up phase in seconds if WARMUP_MAX is not specified
+	 */
+	public WarmupController(Simulator simulator, List<MobileNode> nodes, List<RoadEdge> roads, double defaultMaxTime) {
+		this.curSimulation = simulator;
+		this.nodes = nodes;
+		this.roads = roads;
+		double maxTime = defaultMaxTime;
+		double windowTime = DEFAULT_WINDOW_TIME;
+
+		if (curSimulation.parameters.containsKey("WARMUP_MAX")) {
+			try {
+				maxTime = Double.valueOf(curSimulation.parameters.getProperty("WARMUP_MAX"));
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter WARMUP_MAX: " + e.getMessage());
+			}
+		}
+
+		if (curSimulation.parameters.containsKey("WARMUP_WINDOW")) {
+			try {
+				windowTime = Double.valueOf(curSimulation.parameters.getProperty("WARMUP_WINDOW"));
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter WARMUP_WINDOW: " + e.getMessage());
+			}
+		}
+
+		if (curSimulation.parameters.containsKey("WARMUP_TOLERANCE")) {
+			try {
+				tolerance = Double.valueOf(curSimulation.parameters.getProperty("WARMUP_TOLERANCE"));
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter WARMUP_TOLERANCE: " + e.getMessage());
+			}
+		}
+
+		// durations in steps
+		maxSteps = (int)Math.round(maxTime/curSimulation.step);
+		window = (windowTime>0) ? Math.max(1, (int)Math.round(windowTime/curSimulation.step)) : 0;
+	}
+
+	/**
+	 * Checks if another warm-up step should be performed.
+	 * @return True if the warm-up phase is not finished yet
+	 */
+	public boolean hasNext() {
+		return !converged && steps<maxSteps;
+	}
+
+	/**
+	 * Records the statistics after a warm-up step has been performed by the mobility model.
+	 */
+	public void update() {
+
+		steps++;
+
+		// convergence test disabled
+		if (tolerance<=0 || window<=0) return;
+
+		// sample mean speed and fraction of stopped vehicles
+		double speed = 0;
+		int stopped = 0;
+		Iterator<MobileNode> it = nodes.iterator();
+		while (it.hasNext()) {
+			MobileNode node = it.next();
+			speed+=node.speed;
+			if (node.speed<STOPPED_SPEED) stopped++;
+		}
+		if (nodes.size()>0) {
+			speedSum+=speed/nodes.size();
+			stoppedSum+=1.0*stopped/nodes.size();
+		}
+
+		// sample road occupancy distribution
+		Arrays.fill(histogram, 0);
+		int total = countOccupancy(histogram);
+		if (total>0) {
+			for (int i=0; i<OCCUPANCY_BINS; i++) occupancy[i]+=1.0*histogram[i]/total;
+		}
+
+		samples++;
+
+		if (samples==window) {
+			// end of window, compare with the previous window
+			double meanSpeed = speedSum/samples;
+			double meanStopped = stoppedSum/samples;
+			double distance = 0;
+			for (int i=0; i<OCCUPANCY_BINS; i++) {
+				occupancy[i]/=samples;
+				if (lastOccupancy!=null) distance+=Math.abs(occupancy[i]-lastOccupancy[i]);
+			}
+
+			if (lastOccupancy!=null) {
+				converged = Math.abs(meanSpeed-lastSpeed)<=tolerance*Math.max(lastSpeed, STOPPED_SPEED)
+					&& Math.abs(meanStopped-lastStopped)<=tolerance
+					&& distance/2<=tolerance;
+			}
+
+			// start a new window
+			lastSpeed = meanSpeed;
+			lastStopped = meanStopped;
+			lastOccupancy = occupancy;
+			occupancy = new double[OCCUPANCY_BINS];
+			speedSum = 0;
+			stoppedSum = 0;
+			samples = 0;
+		}
+	}
+
+	/**
+	 * Fills the histogram with the number of roads carrying a given number of vehicles.
+	 * @param histogram Histogram (index=number of vehicles on a road, value=number of roads)
+	 * @return Total number of roads counted
+	 */
+	protected int countOccupancy(int[] histogram) {
+		if (roads==null) return 0;
+		Iterator<RoadEdge> it = roads.iterator();
+		while (it.hasNext()) {
+			int vehicles = it.next().getVehicleCount();
+			histogram[Math.min(vehicles, OCCUPANCY_BINS-1)]++;
+		}
+		return roads.size();
+	}
+
+	/**
+	 * Ends the warm-up phase and reports the number of steps used.
+	 */
+	public void finish() {
+		curSimulation.warmupSteps = steps;
+		if (converged) System.out.println("Warm-up converged after " + steps + " steps (" + steps*curSimulation.step + " s)");
+		else System.out.println("Warm-up finished after " + steps + " steps (" + steps*curSimulation.step + " s)");
+	}
+
+	/**
+	 * Returns the number of warm-up steps performed
+	 * @return Number of steps
+	 */
+	public int getSteps() {
+		return steps;
+	}
+
+	/**
+	 * Returns true if the warm-up phase ended because the statistics converged
+	 * @return True if converged, false if the ceiling was reached
+	 */
+	public boolean hasConverged() {
+		return converged;
+	}
+
+}
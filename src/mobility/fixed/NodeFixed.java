@@ -64,27 +64,27 @@ public class NodeFixed extends MobileNode {
 		
 		while (reject) {
 			
-			double x1 = curSimulator.rng.nextDouble();
-			double x2 = curSimulator.rng.nextDouble();
-			double y1 = curSimulator.rng.nextDouble();
-			double y2 = curSimulator.rng.nextDouble();
+			double x1 = rng.nextDouble();
+			double x2 = rng.nextDouble();
+			double y1 = rng.nextDouble();
+			double y2 = rng.nextDouble();
 			
 			
 			double r = Math.sqrt((x2-x1)*(x2-x1) + (y2-y1)*(y2-y1))/Math.sqrt(2); 
-			double u = curSimulator.rng.nextDouble();
+			double u = rng.nextDouble();
 			
 			
 			if (u<r) {
 				// accept initial positions
 				reject = false;
 				
-				u = curSimulator.rng.nextDouble();
+				u = rng.nextDouble();
 				// select a random position on the line between (x1,y1) and (x2,y2)
 				double initX = u*x1 + (1-u)*x2;
 				double initY = u*y1 + (1-u)*y2;
 				
 				// initial speed
-				u = curSimulator.rng.nextDouble();
+				u = rng.nextDouble();
 				
 				// node joins the simulation
 				Join join = new Join(this, 0.0, curSimulator.size*initX, curSimulator.size*initY);
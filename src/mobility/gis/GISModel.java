@@ -32,11 +32,14 @@
 package mobility.gis;
 
 
+import java.io.File;
 import java.util.*;
 
 //import simulator.*;
 import mobility.*;
+import model.RoadEdge;
 import model.RoadNode;
+import model.TrafficLightController;
 import simulator.Simulator;
 
 
@@ -53,9 +56,24 @@ public class GISModel extends MobilityModel {
 	static LandscapeModel landscape = null;
 	static boolean enableTrafficLights = false;
 	static boolean enableCarFollowing = false;
+	/** controller of the traffic lights (null if traffic lights are disabled) */
+	TrafficLightController trafficLights = null;
+	/** place vehicles directly in the steady-state distribution instead of performing a warm-up phase */
+	static boolean steadyStateInit = false;
+	/** use the ballistic update instead of explicit Euler to integrate speed and position */
+	static boolean ballisticIntegration = false;
+	/** maximum number of sub-steps for vehicles close to a leader or a red traffic light */
+	static int maxSubsteps = 1;
 	Simulator curSimulation;
 
 	static boolean warmupPhase = true;
+	
+	/** arrays holding the state of all vehicles for the batched IDM kernel */
+	double[] speed = new double[0];
+	double[] desiredSpeed = new double[0];
+	double[] gap = new double[0];
+	double[] approachingRate = new double[0];
+	double[] acceleration = new double[0];
 
 	public GISModel(Simulator simulator) {
 		curSimulation = simulator;
@@ -68,6 +86,11 @@ public class GISModel extends MobilityModel {
 		LandscapeModelFactory.addRoads(curSimulation.inputDirectory + "/roads.dat", landscape);
 		//LandscapeModelFactory.addPointOfInterests(Simulator.inputDirectory + "/points.dat", landscape);
 		LandscapeModelFactory.addPointOfInterests(landscape);
+		// building outlines (optional) for the line-of-sight of the neighborhood graph
+		if (new File(curSimulation.inputDirectory + "/buildings.dat").exists()) {
+			LandscapeModelFactory.addBuildings(curSimulation.inputDirectory + "/buildings.dat", landscape);
+			curSimulation.obstacles = landscape.obstacles;
+		}
 		
 		if (curSimulation.parameters.containsKey("CAR_FOLLOWING")) {
 			try {
@@ -86,17 +109,49 @@ public class GISModel extends MobilityModel {
 		}
 		
 		
+		if (curSimulation.parameters.containsKey("STEADY_STATE")) {
+			try {
+				 steadyStateInit = (1==Integer.valueOf(curSimulation.parameters.getProperty("STEADY_STATE")));
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter STEADY_STATE: " + e.getMessage());
+			}
+		}
+		
+		
+		if (curSimulation.parameters.containsKey("INTEGRATOR")) {
+			try {
+				String integrator = curSimulation.parameters.getProperty("INTEGRATOR");
+				if (integrator.equals("BALLISTIC")) ballisticIntegration = true;
+				else if (integrator.equals("EULER")) ballisticIntegration = false;
+				else System.err.println("Error parsing parameter INTEGRATOR: unknown integrator " + integrator);
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter INTEGRATOR: " + e.getMessage());
+			}
+		}
+		
+		if (curSimulation.parameters.containsKey("SUBSTEPS")) {
+			try {
+				 maxSubsteps = Math.max(1, Integer.valueOf(curSimulation.parameters.getProperty("SUBSTEPS")));
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter SUBSTEPS: " + e.getMessage());
+			}
+		}
+		
+		
 		// initialize traffic lights
 		if (enableTrafficLights) {
+			trafficLights = new TrafficLightController(curSimulation.step);
 			Iterator<RoadNode> it = landscape.roadNetwork.getNodes().iterator();
 			while (it.hasNext()) {
 				RoadNode intersection = it.next();
-				intersection.init();
+				trafficLights.add(intersection);
 			}
 		}
 		
 		
 		
+		// vehicles initialized by the warm-up
+		List<MobileNode> warmupNodes = nodes;
 		if (curSimulation.parameters.containsKey("NODES")) {
 			int nodesNumber = 0;
 			try {
@@ -107,12 +162,25 @@ public class GISModel extends MobilityModel {
 			
 			// intialize nodes
 			System.out.println("Initialization of GIS model");
+			SteadyStateInitializer initializer = null;
+			if (steadyStateInit) {
+				initializer = new SteadyStateInitializer(curSimulation, landscape);
+				// all vehicles are warmed up if WARMUP_MAX is set, otherwise only those which could not be placed
+				if (!curSimulation.parameters.containsKey("WARMUP_MAX")) warmupNodes = new ArrayList<MobileNode>();
+			}
 			for (int i=1; i<=nodesNumber; i++) {
 				NodeGIS node = new NodeGIS(i, curSimulation);
 				nodes.add(node);
-				node.warmup();
+				if (!steadyStateInit) node.warmup();
+				else if (!initializer.place(node)) {
+					node.warmup();
+					if (warmupNodes!=nodes) warmupNodes.add(node);
+				}
 				curSimulation.uniqueNodes++;
 			}
+			if (steadyStateInit && initializer.getFailures()>0) {
+				System.err.println("Steady state initialization: " + initializer.getFailures() + " vehicles could not be placed, using the warm-up for these vehicles");
+			}
 			System.out.println("GIS model initialized");
 		} else {
 			System.err.println("Number of nodes not specified. Use the NODES parameter to specify the node number.");
@@ -122,9 +190,30 @@ public class GISModel extends MobilityModel {
 		
 		System.out.println("warm-uping");
 
-		// warm-up phase (5000 seconds)
-		for (int i=1; i<5000; i++) {
-			next();
+		// warm-up phase (until the statistics converge or the maximum duration is reached)
+		// vehicles placed in the steady-state distribution need no warm-up unless WARMUP_MAX is set, they are
+		// held at their positions (with speed 0, so that the warmed up vehicles stop behind them) in the meantime
+		double[] heldSpeed = null;
+		if (warmupNodes!=nodes) {
+			heldSpeed = new double[nodes.size()];
+			for (int i=0; i<nodes.size(); i++) {
+				MobileNode node = nodes.get(i);
+				if (warmupNodes.contains(node)) continue;
+				heldSpeed[i] = node.speed;
+				node.speed = 0;
+			}
+		}
+		WarmupController warmup = new WarmupController(curSimulation, warmupNodes, landscape.roadNetwork.getEdges(), warmupNodes.isEmpty() ? 0 : WarmupController.DEFAULT_MAX_TIME);
+		while (warmup.hasNext()) {
+			next(warmupNodes);
+			warmup.update();
+		}
+		warmup.finish();
+		if (heldSpeed!=null) {
+			for (int i=0; i<nodes.size(); i++) {
+				MobileNode node = nodes.get(i);
+				if (!warmupNodes.contains(node)) node.speed = heldSpeed[i];
+			}
 		}
 		System.out.println("warm-upped");
 
@@ -142,26 +231,23 @@ public class GISModel extends MobilityModel {
 	}
 
 	public void next() {
+		next(nodes);
+	}
 
-		
+	/**
+	 * Performs a simulation step in which only the given vehicles move
+	 * @param nodes Vehicles to move
+	 */
+	void next(List<MobileNode> nodes) {
 		
 		if (enableTrafficLights) {
 			// traffic lights
-			Iterator<RoadNode> it = landscape.roadNetwork.getNodes().iterator();
-			while (it.hasNext()) {
-				RoadNode intersection = it.next();
-				intersection.next();
-			}
+			trafficLights.next();
 		}
 		
 		
 		// nodes
-		Iterator<MobileNode> it2 = nodes.iterator(); 
-		
-		while (it2.hasNext()) {
-			MobileNode node = it2.next();
-			node.prepare();
-		}
+		prepare(nodes);
 		
 		Iterator<MobileNode> it3 = nodes.iterator(); 
 		
@@ -170,9 +256,46 @@ public class GISModel extends MobilityModel {
 			node.next();
 		}
 		
-		
 	}
 
+	/**
+	 * Prepares the next movement of the given vehicles. The leaders of all vehicles are determined first and
+	 * the accelerations are then calculated by the batched IDM kernel.
+	 * @param nodes Vehicles to prepare
+	 */
+	void prepare(List<MobileNode> nodes) {
+		
+		int n = nodes.size();
+		if (speed.length<n) {
+			speed = new double[n];
+			desiredSpeed = new double[n];
+			gap = new double[n];
+			approachingRate = new double[n];
+			acceleration = new double[n];
+		}
+		
+		// collect the vehicle state
+		for (int i=0; i<n; i++) {
+			NodeGIS node = (NodeGIS) nodes.get(i);
+			node.findLeader();
+			speed[i] = node.speed;
+			desiredSpeed[i] = node.v_max;
+			gap[i] = node.s;
+			approachingRate[i] = node.v_delta;
+		}
+		
+		if (n==0) return;
+		
+		// all vehicles share the same driver parameters
+		NodeGIS driver = (NodeGIS) nodes.get(0);
+		IDMKernel.accelerations(n, speed, desiredSpeed, gap, approachingRate, driver.a, driver.b, driver.s_0, driver.t_react, acceleration);
+		
+		// apply the change in speed
+		for (int i=0; i<n; i++) {
+			((NodeGIS) nodes.get(i)).dv = acceleration[i];
+		}
+	}
+	
 	
 	public void finish() {
 		Iterator<MobileNode> it = nodes.iterator(); 
@@ -182,5 +305,17 @@ public class GISModel extends MobilityModel {
 		}
 		
 	}
+	
+	/**
+	 * Returns the highest speed limit of the roads plus the speed a vehicle can gain in one step, the desired
+	 * speed of a vehicle does not exceed the speed limit of its road
+	 */
+	public double getMaxSpeed() {
+		if (landscape==null || nodes.isEmpty()) return Double.POSITIVE_INFINITY;
+		double maxSpeed = 0;
+		Iterator<RoadEdge> it = landscape.roadNetwork.getEdges().iterator();
+		while (it.hasNext()) maxSpeed = Math.max(maxSpeed, it.next().maxSpeed);
+		return maxSpeed + ((NodeGIS)nodes.get(0)).a*curSimulation.step;
+	}
 
 }
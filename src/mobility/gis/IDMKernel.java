@@ -0,0 +1,89 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+
+package mobility.gis;
+
+
+/**
+ * IDMKernel evaluates the acceleration of the Intelligent Driver Model (IDM) [Treiber et al.].
+ * The exponents of the model (4 for the free-road term, 2 for the interaction term) are
+ * evaluated by multiplications. The batched variant processes the vehicles of a region in
+ * primitive arrays with a branch-free loop body, which allows the JIT compiler to vectorize it.
+ * A gap of Double.POSITIVE_INFINITY denotes a vehicle without leader (free road).
+ */
+public final class IDMKernel {
+
+	private IDMKernel() {
+	}
+
+	/**
+	 * Calculates the IDM acceleration of a single vehicle
+	 * @param v Current speed
+	 * @param v0 Desired speed
+	 * @param s Gap to the leader (Double.POSITIVE_INFINITY if there is no leader)
+	 * @param dv Approaching rate (own speed minus speed of the leader)
+	 * @param a Comfortable acceleration
+	 * @param b Comfortable deceleration
+	 * @param s0 Minimal desired gap
+	 * @param T Desired time headway
+	 * @return Acceleration
+	 */
+	public static double acceleration(double v, double v0, double s, double dv, double a, double b, double s0, double T) {
+		double r = v/v0;
+		r = r*r;
+		double sStar = s0 + v*T + v*dv*(1/(2*Math.sqrt(a*b)));
+		double q = sStar/s;
+		return a*(1 - r*r - q*q);
+	}
+
+	/**
+	 * Calculates the IDM acceleration for a batch of vehicles sharing the same driver parameters
+	 * @param n Number of vehicles in the batch
+	 * @param v Current speeds
+	 * @param v0 Desired speeds
+	 * @param s Gaps to the leaders (Double.POSITIVE_INFINITY if there is no leader)
+	 * @param dv Approaching rates (own speed minus speed of the leader)
+	 * @param a Comfortable acceleration
+	 * @param b Comfortable deceleration
+	 * @param s0 Minimal desired gap
+	 * @param T Desired time headway
+	 * @param result Array receiving the accelerations
+	 */
+	public static void accelerations(int n, double[] v, double[] v0, double[] s, double[] dv, double a, double b, double s0, double T, double[] result) {
+		double c = 1/(2*Math.sqrt(a*b));
+		for (int i=0; i<n; i++) {
+			double r = v[i]/v0[i];
+			r = r*r;
+			double sStar = s0 + v[i]*T + v[i]*dv[i]*c;
+			double q = sStar/s[i];
+			result[i] = a*(1 - r*r - q*q);
+		}
+	}
+
+}
@@ -37,7 +37,8 @@ import java.util.*;
 
 /**
  * LandscapeModel is a data structure which holds geographical data for a specified area.
- * Currently, a landscape model contains only a network of roads.
+ * A landscape model contains a network of roads and optionally the outlines of the buildings, which are
+ * indexed for line-of-sight queries.
  * @author psommer
  *
  */
@@ -47,13 +48,18 @@ public class LandscapeModel {
 	List<RoadNode> destinations = new ArrayList<RoadNode>();
 	/** network of roads */
 	public RoadNetwork roadNetwork = null;
+	/** buildings of the map */
+	public List<Building> buildings = new ArrayList<Building>();
+	/** spatial index over the building outlines (null if no buildings are loaded) */
+	public ObstacleIndex obstacles = null;
 	
 	/**
 	 * Returns a random destination point in the map
+	 * @param rng Random number generator
 	 * @return Intersection which is next to the random destination point
 	 */
-	public RoadNode getNextDestination(Simulator curSimulation) {
-		return destinations.get(curSimulation.rng.nextInt(destinations.size()));
+	public RoadNode getNextDestination(SplittableRandom rng) {
+		return destinations.get(rng.nextInt(destinations.size()));
 	}
 	
 	
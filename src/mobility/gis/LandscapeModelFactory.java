@@ -497,67 +497,54 @@ public final class LandscapeModelFactory {
 	
 	
 
-/*	public static boolean addBuildings(LandscapeModel model, Simulation simulation) {
-		
-	
-		int buildings = 0;
+	/**
+	 * Adds the buildings to the landscape model and builds the index over their outlines. Each line of the file
+	 * contains one segment of a building outline: building identifier, x1, y1, x2, y2 (in the coordinates
+	 * of the roads).
+	 * @param file File with building outlines
+	 * @param model Landscape model
+	 * @return Returns true if the method completed successfully
+	 */
+	public static boolean addBuildings(String file, LandscapeModel model) {
+
 		int lastId = -1;
 		Building building = null;
-		MapArea area = model.area;
-		
+		ArrayList<Line> segments = new ArrayList<Line>();
+
 		try {
-	        BufferedReader in = new BufferedReader(new FileReader("/home/psommer/ETHZ/MA/Resources/GIS/swissGIS/DBimport/Scenarios/luzern/buildings.dat"));
+	        BufferedReader in = new BufferedReader(new FileReader(file));
 	        String str;
 	        while ((str = in.readLine()) != null) {
-	           
-	        	String[] column = str.split(" ");
-	        	
+	        	if (str.trim().length()==0) continue;
+
+	        	String[] column = str.trim().split("\\s+");
+	        	int id = Integer.parseInt(column[0]);
 	        	double x1 = Double.parseDouble(column[1]);
 				double y1 = Double.parseDouble(column[2]);
 				double x2 = Double.parseDouble(column[3]);
 				double y2 = Double.parseDouble(column[4]);
-				int id = Integer.parseInt(column[0]);
-	        	
+
 				if (id!=lastId) {
-					
-					building = new Building();
-					building.id = id;
+					building = new Building(id);
 					model.buildings.add(building);
-					System.out.println("");
-					
-					buildings++;
 					lastId = id;
 				}
-				
-				// scale coordinates
-				x1 = (x1 - area.xMin)/(area.xMax-area.xMin)*simulation.size;
-				y1 = (y1 - area.yMin)/(area.yMax-area.yMin)*simulation.size;
-				x2 = (x2 - area.xMin)/(area.xMax-area.xMin)*simulation.size;
-				y2 = (y2 - area.yMin)/(area.yMax-area.yMin)*simulation.size;
-				
+
 				Line line = new Line(x1, y1, x2, y2);
-				
-				System.out.println("Line from (" + x1 + "," + y1 + ") to (" + x2 + "," + y2 + ")");
 				building.outline.add(line);
-				
-			}	
-				
-	        
+				segments.add(line);
+			}
 	        in.close();
-	        
+
 		} catch (Exception e) {
 			System.err.println(e.getLocalizedMessage());
+			return false;
 		}
-		
-		System.out.println("Buildings: " + model.buildings.size());
-		
-	
+
+		model.obstacles = new ObstacleIndex(segments);
+		System.out.println("Buildings: " + model.buildings.size() + " (" + segments.size() + " wall segments)");
 		return true;
 	}
 	
 	
-	
-*/
-	
-	
 }
@@ -35,6 +35,7 @@ package mobility.gis;
 import event.*;
 import simulator.*;
 import mobility.MobileNode;
+import mobility.OutputSampler;
 import model.*;
 
 /**
@@ -74,7 +75,11 @@ public class NodeGIS extends MobileNode {
 	
 	// position at last sampling point
 	Position lastPositionXY = new Position();
+	/** buffer receiving the position at the current sampling point */
+	Position nextPositionXY = new Position();
 	Simulator curSimulation;
+	/** sampler generating the events at the output sample times (null if the output step equals the simulation step) */
+	OutputSampler sampler = null;
 	
 
 	/**
@@ -85,6 +90,10 @@ public class NodeGIS extends MobileNode {
 	public NodeGIS(int id, Simulator curSimulation) {
 		super(id, curSimulation);
 		this.curSimulation = curSimulation;
+		if (curSimulation.outputStep!=curSimulation.step) {
+			sampler = new OutputSampler(curSimulation.outputStep);
+			sampledOutput = true;
+		}
 	}
 	
 	
@@ -94,7 +103,7 @@ public class NodeGIS extends MobileNode {
 	public void warmup() {
 		
 		// select a start node
-		RoadNode start = GISModel.landscape.getNextDestination(curSimulation);
+		RoadNode start = GISModel.landscape.getNextDestination(rng);
 		
 		lastPositionXY.x = start.x;
 		lastPositionXY.y = start.y;
@@ -104,7 +113,7 @@ public class NodeGIS extends MobileNode {
 		while (route==null) {
 			// find a destination node
 			while (destination==start) {
-				destination = GISModel.landscape.getNextDestination(curSimulation);
+				destination = GISModel.landscape.getNextDestination(rng);
 			}
 			
 			// find the shortest path between source and destination
@@ -115,12 +124,12 @@ public class NodeGIS extends MobileNode {
 		road = route.getNextRoad();
 		
 		// start position
-		position = road.length*curSimulation.rng.nextDouble();
+		position = road.length*rng.nextDouble();
 		speed = 0;
 		// enter the current road
 		road.update(this);
 		// set desired speed
-		v_max = road.maxSpeed*(curSimulation.rng.nextDouble()*0.05 + 0.95);
+		v_max = road.maxSpeed*(rng.nextDouble()*0.05 + 0.95);
 		
 		
 	}
@@ -136,6 +145,15 @@ public class NodeGIS extends MobileNode {
 	 * then applied by the next() method.
 	 */
 	public void prepare() {
+		findLeader();
+		dv = IDMKernel.acceleration(speed, v_max, s, v_delta, a, b, s_0, t_react);
+	}
+	
+	/**
+	 * Determines the distance (s) and the approaching rate (v_delta) to the vehicle or the red traffic light
+	 * in front of this node. The distance is set to Double.POSITIVE_INFINITY if the road ahead is free.
+	 */
+	void findLeader() {
 
 		//if (id==1) System.out.println("Node: " + id  + " - Current Road: " + road.identifier + " at position: " + position + ", speed: " + speed);
 		
@@ -188,27 +206,66 @@ public class NodeGIS extends MobileNode {
 			
 		} 	
 		
-		if (s<Double.POSITIVE_INFINITY) {
-			
-			double s_star = s_0 + (speed*t_react + speed*v_delta/(2*Math.sqrt(a*b)));
-			dv = a * (1 - Math.pow(speed/v_max, 4) - Math.pow(s_star/s, 2));
-		} else {
-			dv = a * (1 - Math.pow(speed/v_max, 4));
+	}
+	
+	
+	/**
+	 * Integrates speed and position over one simulation step. Vehicles close to a leader or a red traffic light
+	 * divide the step into sub-steps (up to GISModel.maxSubsteps) and re-evaluate the acceleration in each
+	 * sub-step, assuming that the leader keeps its speed.
+	 * @param step Duration of the simulation step
+	 */
+	void integrate(double step) {
+		
+		int substeps = 1;
+		if (GISModel.maxSubsteps>1 && s<Double.POSITIVE_INFINITY) {
+			// limit the distance travelled in one sub-step to half of the gap
+			double gap = Math.max(s, s_0);
+			substeps = (int)Math.min(GISModel.maxSubsteps, Math.ceil(2*speed*step/gap));
+			if (substeps<1) substeps = 1;
 		}
 		
+		double h = step/substeps;
+		double leaderSpeed = speed - v_delta;
 		
+		for (int i=0; i<substeps; i++) {
+			
+			if (i>0) {
+				// re-evaluate the acceleration for the current gap
+				v_delta = speed - leaderSpeed;
+				dv = IDMKernel.acceleration(speed, v_max, s, v_delta, a, b, s_0, t_react);
+			}
+			
+			double distance;
+			if (GISModel.ballisticIntegration) {
+				// ballistic update, speed is not allowed to become negative
+				double v = speed + dv*h;
+				if (v<0) {
+					// vehicle stops within this sub-step
+					distance = -speed*speed/(2*dv);
+					v = 0;
+				} else {
+					distance = speed*h + 0.5*dv*h*h;
+				}
+				speed = v;
+				if (speed<0.01) speed=0;
+			} else {
+				// explicit Euler
+				speed += dv*h;
+				if (speed<0.01) speed=0;
+				distance = speed*h;
+			}
+			
+			position += distance;
+			s -= distance - leaderSpeed*h;
+		}
 	}
 	
 	
 	public boolean next() {
 			
-		// update the current speed
-		speed += dv*curSimulation.step;
-		
-		if (speed<0.01) speed=0;
-		
-		// update the current position
-		position += speed*curSimulation.step;
+		// update the current speed and position
+		integrate(curSimulation.step);
 		
 		// check if the node is still within this street
 		while (position>=road.length) {
@@ -225,7 +282,7 @@ public class NodeGIS extends MobileNode {
 				
 				road = route.getNextRoad();
 				// set desired speed
-				v_max = road.maxSpeed*(curSimulation.rng.nextDouble()*0.05 + 0.95);
+				v_max = road.maxSpeed*(rng.nextDouble()*0.05 + 0.95);
 				
 			} else {
 				
@@ -242,7 +299,7 @@ public class NodeGIS extends MobileNode {
 				while (route==null) {
 					// find a destination node
 					while (destination==start) {
-						destination = GISModel.landscape.getNextDestination(curSimulation);
+						destination = GISModel.landscape.getNextDestination(rng);
 					}
 					// find the shortest path between source and destination
 					route = GISModel.landscape.roadNetwork.getPath(start, destination);
@@ -250,7 +307,7 @@ public class NodeGIS extends MobileNode {
 				
 				road = route.getNextRoad();
 				// set desired speed
-				v_max = road.maxSpeed*(curSimulation.rng.nextDouble()*0.05 + 0.95);
+				v_max = road.maxSpeed*(rng.nextDouble()*0.05 + 0.95);
 				
 			}
 			
@@ -262,18 +319,21 @@ public class NodeGIS extends MobileNode {
 		// determine the current position
 		
 		// transform the position relative to the street into a position on the map
-		Position positionXY = road.getPosition(this);
+		Position positionXY = road.getPosition(position, nextPositionXY);
 		x = positionXY.x;
 		y = positionXY.y;
 		
 		// generate the next event
 		if (!GISModel.warmupPhase && curSimulation.time<curSimulation.duration) {
 			
-			if (speed>0) addEvent(new Move(this, curSimulation.time, lastPositionXY.x, lastPositionXY.y, positionXY.x, positionXY.y, speed, curSimulation.step));
-			else addEvent(new Pause(this, curSimulation.time, curSimulation.step, positionXY.x, positionXY.y));
+			if (sampler!=null) sampler.record(this, curSimulation.time, curSimulation.step, lastPositionXY.x, lastPositionXY.y, positionXY.x, positionXY.y, speed);
+			else if (speed>0) addMove(curSimulation.time, lastPositionXY.x, lastPositionXY.y, positionXY.x, positionXY.y, speed, curSimulation.step);
+			else addPause(curSimulation.time, curSimulation.step, positionXY.x, positionXY.y);
 		}
 		
 	
+		// reuse the position of the last sampling point as buffer for the next step
+		nextPositionXY = lastPositionXY;
 		lastPositionXY = positionXY;
 		
 		
@@ -283,6 +343,8 @@ public class NodeGIS extends MobileNode {
 	
 	
 	public void finish() {
+		// last partial output interval
+		if (sampler!=null) sampler.flush(this);
 		addEvent(new Leave(this, curSimulation.duration, x, y));
 		curSimulation.removeNode(curSimulation.duration, this);
 		super.finish();
@@ -0,0 +1,233 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+
+package mobility.gis;
+
+import java.util.*;
+
+import mobility.MobileNode;
+import model.*;
+import probability.RandomStreams;
+import simulator.Simulator;
+
+
+/**
+ * SteadyStateInitializer places vehicles of the GIS model directly in their steady-state distribution.
+ * Similar to the initialization of the Random Waypoint model, trips are sampled from the destination
+ * distribution with a probability proportional to their travel time (rejection sampling) and each vehicle
+ * is placed on its route at a position which is weighted by the time spent on the roads.
+ * The acceptance test uses a fixed upper bound of the travel time which is derived from the road network
+ * before the first vehicle is placed, so that all vehicles are sampled from the same distribution.
+ * Minimal headways to the vehicles in front and behind are respected, also across the intersections at the
+ * ends of the selected road, and the initial speed is derived from the gap to the vehicle in front (limited by
+ * the desired speed on the selected road), so that no warm-up phase is required. If no trip can be placed within
+ * MAX_TRIPS samples (e.g. a single destination or saturated roads), place() returns false and the vehicle is
+ * initialized by the warm-up instead.
+ */
+public class SteadyStateInitializer {
+
+	/** number of intersections tried as hub for the upper bound of the trip duration */
+	static final int HUBS = 4;
+	/** number of trips used to estimate the maximum trip duration if no upper bound is found */
+	static final int PILOT_TRIPS = 200;
+	/** number of attempts to find a free position on the selected road */
+	static final int PLACEMENT_ATTEMPTS = 10;
+	/** maximum number of trips sampled for a vehicle */
+	static final int MAX_TRIPS = 1000;
+	/** maximum number of attempts to find a destination different from the start */
+	static final int DESTINATION_ATTEMPTS = 100;
+
+	/** landscape model */
+	LandscapeModel landscape = null;
+	Simulator curSimulation;
+	/** upper bound (or estimate) of the travel time of a trip, fixed before the first vehicle is placed */
+	double maxWeight = Double.POSITIVE_INFINITY;
+	/** number of vehicles which could not be placed */
+	int failures = 0;
+
+
+	/**
+	 * Creates an initializer for the given landscape model
+	 * @param simulator Simulator
+	 * @param landscape Landscape model with road network and destinations
+	 */
+	public SteadyStateInitializer(Simulator simulator, LandscapeModel landscape) {
+		this.curSimulation = simulator;
+		this.landscape = landscape;
+
+		// upper bound of the travel time between two destinations (paths through a hub)
+		SplittableRandom rng = curSimulation.randomStreams.stream(RandomStreams.MODEL, 0);
+		for (int i=0; i<HUBS; i++) {
+			RoadNode hub = landscape.getNextDestination(rng);
+			maxWeight = Math.min(maxWeight, landscape.roadNetwork.getMaxPathWeight(landscape.destinations, hub));
+		}
+
+		// destinations which are not connected by the hubs, estimate the maximum travel time of a trip instead
+		if (maxWeight==Double.POSITIVE_INFINITY) {
+			maxWeight = 0;
+			for (int i=0; i<PILOT_TRIPS; i++) {
+				Path path = nextTrip(landscape.getNextDestination(rng), rng);
+				if (path!=null && path.getWeight()>maxWeight) maxWeight = path.getWeight();
+			}
+		}
+	}
+
+	/**
+	 * Samples a trip from the given start intersection to a random destination
+	 * @param start Start intersection
+	 * @param rng Random number generator
+	 * @return Shortest path to the destination or null if no other destination is found or it is not reachable
+	 */
+	Path nextTrip(RoadNode start, SplittableRandom rng) {
+		RoadNode destination = start;
+		for (int i=0; i<DESTINATION_ATTEMPTS && destination==start; i++) {
+			destination = landscape.getNextDestination(rng);
+		}
+		if (destination==start) return null;
+		return landscape.roadNetwork.getPath(start, destination);
+	}
+
+	/**
+	 * Places the vehicle at a random position of its steady-state distribution
+	 * @param node Vehicle to initialize
+	 * @return True if the vehicle has been placed, false if no trip could be placed within MAX_TRIPS samples
+	 */
+	public boolean place(NodeGIS node) {
+
+		for (int trip=0; trip<MAX_TRIPS; trip++) {
+
+			// sample a trip
+			Path path = nextTrip(landscape.getNextDestination(node.rng), node.rng);
+			if (path==null || path.size()==0) continue;
+
+			// accept the trip with a probability proportional to its travel time
+			double weight = path.getWeight();
+			if (node.rng.nextDouble()*maxWeight>weight) continue;
+
+			// select a road of the trip weighted by the time spent on it
+			double target = node.rng.nextDouble()*weight;
+			RoadEdge road = null;
+			while (path.hasNextRoad()) {
+				road = path.getNextRoad();
+				if (target<road.weight || !path.hasNextRoad()) break;
+				target-=road.weight;
+			}
+
+			// next road of the route
+			ListIterator<RoadEdge> remaining = path.getPathIterator();
+			RoadEdge nextRoad = remaining.hasNext() ? remaining.next() : null;
+
+			// desired speed on this road
+			double v_max = road.maxSpeed*(node.rng.nextDouble()*0.05 + 0.95);
+
+			// find a position on the road which respects the minimal headways
+			for (int i=0; i<PLACEMENT_ATTEMPTS; i++) {
+
+				double position = road.length*node.rng.nextDouble();
+
+				// gaps are measured as in NodeGIS.findLeader (position of the leader minus the length of the follower),
+				// the vehicle in front is the next vehicle on this road or the rearmost vehicle on the next road of the route
+				double gap = Double.POSITIVE_INFINITY;
+				NodeGIS front = (NodeGIS)road.getVehicleAhead(position);
+				if (front!=null) gap = front.position - node.length - position;
+				else if (nextRoad!=null && nextRoad.getRearmostVehicle()!=null) {
+					gap = road.length - position + nextRoad.getRearmostVehicle().position - node.length;
+				}
+				if (gap<node.s_0) continue;
+
+				// the vehicle behind keeps its speed and needs its own desired headway, it is the next vehicle
+				// on this road or the foremost vehicle on any road entering this road
+				NodeGIS rear = (NodeGIS)road.getVehicleBehind(position);
+				if (rear!=null) {
+					if (!keepsHeadway(rear, position - rear.length - rear.position)) continue;
+				} else if (!keepsHeadway(road, position)) continue;
+
+				// position found, initialize the vehicle state
+				node.route = path;
+				// destination of the trip is the end of the last road on the path
+				node.destination = road.getEndNode();
+				ListIterator<RoadEdge> it = path.getPathIterator();
+				while (it.hasNext()) node.destination = it.next().getEndNode();
+
+				node.road = road;
+				node.position = position;
+				node.v_max = v_max;
+				// speed for which the gap equals the desired headway s_0 + speed*t_react
+				node.speed = Math.min(v_max, (gap - node.s_0)/node.t_react);
+				road.update(node);
+
+				Position positionXY = road.getPosition(node);
+				node.x = positionXY.x;
+				node.y = positionXY.y;
+				node.lastPositionXY = positionXY;
+				return true;
+			}
+
+			// no free position found, sample a new trip
+		}
+
+		failures++;
+		return false;
+	}
+
+	/**
+	 * Checks the headways of the foremost vehicles on the roads entering the given road
+	 * @param road Road
+	 * @param position Position of the new vehicle on the road
+	 * @return True if the foremost vehicles of all incoming roads keep their desired headway
+	 */
+	boolean keepsHeadway(RoadEdge road, double position) {
+		Iterator<RoadEdge> it = road.getStartNode().getInEdges().iterator();
+		while (it.hasNext()) {
+			RoadEdge incoming = it.next();
+			NodeGIS rear = (NodeGIS)incoming.getForemostVehicle();
+			if (rear!=null && !keepsHeadway(rear, position + incoming.length - rear.length - rear.position)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if a vehicle keeps its desired headway to a new vehicle in front
+	 * @param rear Vehicle behind the new vehicle
+	 * @param gap Gap between the vehicles
+	 * @return True if the gap is at least the desired headway of the vehicle behind
+	 */
+	boolean keepsHeadway(NodeGIS rear, double gap) {
+		return gap>=rear.s_0 + rear.speed*rear.t_react;
+	}
+
+	/**
+	 * Returns the number of vehicles which could not be placed
+	 * @return Number of vehicles
+	 */
+	public int getFailures() {
+		return failures;
+	}
+
+}
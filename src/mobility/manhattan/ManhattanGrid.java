@@ -0,0 +1,362 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+
+package mobility.manhattan;
+
+import java.util.*;
+
+import model.Position;
+
+
+/**
+ * ManhattanGrid is an implicit representation of the road grid of the Manhattan mobility model.
+ * Intersections and streets are not materialized as objects, but addressed arithmetically by row, column
+ * and direction. The grid has the same layout as the road network built by the ManhattanModel: horizontal
+ * streets on the inner rows, vertical streets on the inner columns, and a pair of opposite streets between
+ * two neighboring intersections. Streets are numbered in the same order as the edges of the road network.
+ * Turns are looked up in a table, and the state and order of the vehicles on each street are kept in
+ * primitive arrays. The vehicles are kept in the same order as on the RoadEdge objects, so both representations
+ * generate the same traces for the same parameters and seed.
+ */
+public class ManhattanGrid {
+
+	/** directions of a street */
+	static final int EAST = 0;
+	static final int WEST = 1;
+	static final int NORTH = 2;
+	static final int SOUTH = 3;
+
+	/** new direction of a vehicle for each current direction and random choice (0,1=straight ahead, 2,3=turn) */
+	static final int[][] TURNS = {
+		{EAST, EAST, SOUTH, NORTH},
+		{WEST, WEST, SOUTH, NORTH},
+		{NORTH, NORTH, WEST, EAST},
+		{SOUTH, SOUTH, WEST, EAST}
+	};
+
+	/** number of grid segments in one dimension */
+	int segments = 0;
+	/** length of a block */
+	int blockLength = 0;
+	/** length of a street */
+	double length = 0;
+	/** number of horizontal streets */
+	int horizontalStreets = 0;
+	/** total number of streets */
+	int streets = 0;
+
+	/** rearmost vehicle on each street (-1 if the street is empty) */
+	int[] rearmost = null;
+	/** foremost vehicle on each street (-1 if the street is empty) */
+	int[] foremost = null;
+	/** number of vehicles on each street */
+	int[] vehicleCount = null;
+
+	/** number of vehicles */
+	int size = 0;
+	/** current street of each vehicle */
+	int[] street = new int[0];
+	/** vehicle directly in front on the same street (-1 if none) */
+	int[] leader = new int[0];
+	/** vehicle directly behind on the same street (-1 if none) */
+	int[] follower = new int[0];
+	/** position on the current street */
+	double[] position = new double[0];
+	/** current speed */
+	double[] speed = new double[0];
+	/** change in speed for the next step */
+	double[] dv = new double[0];
+	/** start point of the current street */
+	double[] originX = new double[0];
+	double[] originY = new double[0];
+	/** difference between end and start point of the current street */
+	double[] deltaX = new double[0];
+	double[] deltaY = new double[0];
+	/** random number generator of each vehicle */
+	SplittableRandom[] rng = new SplittableRandom[0];
+
+
+	/**
+	 * Creates an implicit grid
+	 * @param segments Number of grid segments in one dimension
+	 * @param blockLength Length of a block
+	 */
+	public ManhattanGrid(int segments, int blockLength) {
+		this.segments = segments;
+		this.blockLength = blockLength;
+		// same calculation as in the RoadEdge constructor
+		length = Math.sqrt(1.0*blockLength*blockLength);
+		horizontalStreets = 2*(segments-1)*segments;
+		streets = horizontalStreets + 2*segments*(segments-1);
+
+		rearmost = new int[streets];
+		foremost = new int[streets];
+		vehicleCount = new int[streets];
+		Arrays.fill(rearmost, -1);
+		Arrays.fill(foremost, -1);
+	}
+
+	/**
+	 * Returns the number of streets
+	 * @return Number of streets
+	 */
+	public int getStreetCount() {
+		return streets;
+	}
+
+	/**
+	 * Returns the direction of a street
+	 * @param id Street
+	 * @return Direction (EAST, WEST, NORTH or SOUTH)
+	 */
+	int getDirection(int id) {
+		return (id<horizontalStreets ? EAST : NORTH) + (id & 1);
+	}
+
+	/**
+	 * Returns the street leaving an intersection in the given direction
+	 * @param row Row of the intersection
+	 * @param column Column of the intersection
+	 * @param direction Direction
+	 * @return Street
+	 */
+	int getStreet(int row, int column, int direction) {
+		switch (direction) {
+			case EAST: return 2*((row-1)*segments + column);
+			case WEST: return 2*((row-1)*segments + column-1) + 1;
+			case NORTH: return horizontalStreets + 2*(row*(segments-1) + column-1);
+			default: return horizontalStreets + 2*((row-1)*(segments-1) + column-1) + 1;
+		}
+	}
+
+	/**
+	 * Returns the street a vehicle takes at the end of its current street
+	 * @param id Current street
+	 * @param choice Random choice (0,1=straight ahead, 2,3=turn)
+	 * @return Next street
+	 */
+	int getNextStreet(int id, int choice) {
+
+		// intersection at the end of the street
+		int row, column;
+		if (id<horizontalStreets) {
+			int index = id>>1;
+			row = index/segments + 1;
+			column = index%segments + 1 - (id & 1);
+		} else {
+			int index = (id-horizontalStreets)>>1;
+			row = index/(segments-1) + 1 - (id & 1);
+			column = index%(segments-1) + 1;
+		}
+
+		// dead end at the border of the grid, the vehicle turns around
+		if (row==0 || row==segments || column==0 || column==segments) return id ^ 1;
+
+		return getStreet(row, column, TURNS[getDirection(id)][choice]);
+	}
+
+	/**
+	 * Adds a vehicle to the grid
+	 * @param random Random number generator of the vehicle
+	 * @return Index of the vehicle
+	 */
+	int add(SplittableRandom random) {
+		if (size==street.length) {
+			int capacity = Math.max(16, 2*size);
+			street = Arrays.copyOf(street, capacity);
+			leader = Arrays.copyOf(leader, capacity);
+			follower = Arrays.copyOf(follower, capacity);
+			position = Arrays.copyOf(position, capacity);
+			speed = Arrays.copyOf(speed, capacity);
+			dv = Arrays.copyOf(dv, capacity);
+			originX = Arrays.copyOf(originX, capacity);
+			originY = Arrays.copyOf(originY, capacity);
+			deltaX = Arrays.copyOf(deltaX, capacity);
+			deltaY = Arrays.copyOf(deltaY, capacity);
+			rng = Arrays.copyOf(rng, capacity);
+		}
+		rng[size] = random;
+		street[size] = -1;
+		leader[size] = -1;
+		follower[size] = -1;
+		return size++;
+	}
+
+	/**
+	 * Places a vehicle on a street. The vehicle is inserted behind the first vehicle which is not behind it
+	 * (walking from the rear end of the street).
+	 * @param vehicle Vehicle
+	 * @param id Street
+	 */
+	void enter(int vehicle, int id) {
+
+		// find the first vehicle which is not behind the new vehicle
+		int next = rearmost[id];
+		while (next!=-1 && position[next]<position[vehicle]) next = leader[next];
+
+		street[vehicle] = id;
+		insertAfter((next==-1) ? foremost[id] : follower[next], vehicle);
+		vehicleCount[id]++;
+
+		// start and end point of the street
+		int row, column;
+		int direction = getDirection(id);
+		if (id<horizontalStreets) {
+			int index = id>>1;
+			row = index/segments + 1;
+			column = index%segments + (id & 1);
+		} else {
+			int index = (id-horizontalStreets)>>1;
+			row = index/(segments-1) + (id & 1);
+			column = index%(segments-1) + 1;
+		}
+		originX[vehicle] = column*blockLength;
+		originY[vehicle] = row*blockLength;
+		deltaX[vehicle] = (direction==EAST) ? blockLength : (direction==WEST) ? -blockLength : 0;
+		deltaY[vehicle] = (direction==NORTH) ? blockLength : (direction==SOUTH) ? -blockLength : 0;
+	}
+
+	/**
+	 * Removes a vehicle from its current street
+	 * @param vehicle Vehicle
+	 */
+	void leave(int vehicle) {
+		int id = street[vehicle];
+		if (id==-1) return;
+		unlink(vehicle);
+		street[vehicle] = -1;
+		vehicleCount[id]--;
+	}
+
+	/**
+	 * Inserts a vehicle into the order of its street (same as RoadEdge.insertAfter)
+	 * @param back Vehicle directly behind the inserted vehicle (-1 to insert at the rear end of the street)
+	 * @param vehicle Vehicle to insert
+	 */
+	void insertAfter(int back, int vehicle) {
+		int id = street[vehicle];
+		int next = (back==-1) ? rearmost[id] : leader[back];
+		follower[vehicle] = back;
+		leader[vehicle] = next;
+		if (back==-1) rearmost[id] = vehicle;
+		else leader[back] = vehicle;
+		if (next==-1) foremost[id] = vehicle;
+		else follower[next] = vehicle;
+	}
+
+	/**
+	 * Removes a vehicle from the order of its street without changing the vehicle count
+	 * @param vehicle Vehicle to remove
+	 */
+	void unlink(int vehicle) {
+		int id = street[vehicle];
+		if (follower[vehicle]==-1) rearmost[id] = leader[vehicle];
+		else leader[follower[vehicle]] = leader[vehicle];
+		if (leader[vehicle]==-1) foremost[id] = follower[vehicle];
+		else follower[leader[vehicle]] = follower[vehicle];
+		leader[vehicle] = -1;
+		follower[vehicle] = -1;
+	}
+
+	/**
+	 * Calculates the change in speed of all vehicles for the next step
+	 */
+	void prepare() {
+		for (int i=0; i<size; i++) {
+			// update node velocity
+			dv[i] = (2*rng[i].nextDouble() - 1)*ManhattanModel.acceleration;
+
+			// limit speed to the speed of the preceding driver
+			int front = leader[i];
+			if (front!=-1 && (position[front] - position[i])<=ManhattanModel.securityDistance) {
+				if (speed[front]<(speed[i]+dv[i])) dv[i] = speed[front] - speed[i];
+			}
+		}
+	}
+
+	/**
+	 * Moves a vehicle for one simulation step
+	 * @param vehicle Vehicle
+	 * @param step Duration of the simulation step
+	 */
+	void move(int vehicle, double step) {
+
+		speed[vehicle]+=dv[vehicle];
+		if (speed[vehicle]<ManhattanModel.speedMin) speed[vehicle] = ManhattanModel.speedMin;
+		if (speed[vehicle]>ManhattanModel.speedMax) speed[vehicle] = ManhattanModel.speedMax;
+
+		position[vehicle]+=speed[vehicle]*step;
+
+		if (position[vehicle]>=length) {
+			// move into next street
+			int next = getNextStreet(street[vehicle], rng[vehicle].nextInt(4));
+			leave(vehicle);
+			position[vehicle] = position[vehicle] - length;
+			enter(vehicle, next);
+		} else {
+			// keep the vehicles on the street ordered by their position (same as RoadEdge.update)
+			while (leader[vehicle]!=-1 && position[leader[vehicle]]<position[vehicle]) {
+				int front = leader[vehicle];
+				unlink(vehicle);
+				insertAfter(front, vehicle);
+			}
+			while (follower[vehicle]!=-1 && position[follower[vehicle]]>position[vehicle]) {
+				int back = follower[vehicle];
+				unlink(vehicle);
+				insertAfter(follower[back], vehicle);
+			}
+		}
+	}
+
+	/**
+	 * Calculates the coordinates of a vehicle
+	 * @param vehicle Vehicle
+	 * @param result Position object receiving the coordinates
+	 * @return The result object
+	 */
+	Position getPosition(int vehicle, Position result) {
+		double fraction = position[vehicle]/length;
+		result.x = originX[vehicle] + fraction*deltaX[vehicle];
+		result.y = originY[vehicle] + fraction*deltaY[vehicle];
+		return result;
+	}
+
+	/**
+	 * Fills the histogram with the number of streets carrying a given number of vehicles.
+	 * @param histogram Histogram (index=number of vehicles on a street, value=number of streets)
+	 * @return Total number of streets counted
+	 */
+	int countOccupancy(int[] histogram) {
+		for (int i=0; i<streets; i++) {
+			histogram[Math.min(vehicleCount[i], histogram.length-1)]++;
+		}
+		return streets;
+	}
+
+}
@@ -51,6 +51,8 @@ public class ManhattanModel extends MobilityModel {
 	static RoadNetwork roadNetwork = null;
 	/** number of grid segments */
 	int segments = 15;
+	/** implicit grid (null if the road network is materialized as objects) */
+	ManhattanGrid grid = null;
 	/** graph nodes */
 	ArrayList<RoadNode> graphNodes = new ArrayList<RoadNode>();
 	/** graph edges */
@@ -98,46 +100,68 @@ public class ManhattanModel extends MobilityModel {
 			return;
 		}
 
+		if (curSimulation.parameters.containsKey("SEGMENTS")) {
+			try {
+				segments = Integer.valueOf(curSimulation.parameters.getProperty("SEGMENTS"));
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter SEGMENTS: " + e.getMessage());
+			}
+		}
 		
-		// create nodes
-		for (int i=0; i<=segments; i++) {
-			for (int k=0; k<=segments; k++) {
-				RoadNode node = new RoadNode(k*blockLength,i*blockLength);
-				graphNodes.add(node);
+		if (curSimulation.parameters.containsKey("GRID")) {
+			try {
+				String representation = curSimulation.parameters.getProperty("GRID");
+				if (representation.equals("IMPLICIT")) grid = new ManhattanGrid(segments, blockLength);
+				else if (!representation.equals("OBJECTS")) System.err.println("Error parsing parameter GRID: unknown grid representation " + representation);
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter GRID: " + e.getMessage());
 			}
 		}
 		
-		// create horizontal edges
+		if (grid!=null) {
+			System.out.println("Implicit grid with " + grid.getStreetCount() + " streets");
+		} else {
+		
+			// create nodes
+			for (int i=0; i<=segments; i++) {
+				for (int k=0; k<=segments; k++) {
+					RoadNode node = new RoadNode(k*blockLength,i*blockLength);
+					graphNodes.add(node);
+				}
+			}
+		
+			// create horizontal edges
 
-		for (int i=1; i<segments; i++) {
-			for (int k=0; k<segments; k++) {
-					graphEdges.add(new RoadEdge(graphNodes.get(i*(segments+1) + k), graphNodes.get(i*(segments+1) + k+1)));
-					graphEdges.add(new RoadEdge(graphNodes.get(i*(segments+1) + k+1),graphNodes.get(i*(segments+1) + k)));
+			for (int i=1; i<segments; i++) {
+				for (int k=0; k<segments; k++) {
+						graphEdges.add(new RoadEdge(graphNodes.get(i*(segments+1) + k), graphNodes.get(i*(segments+1) + k+1)));
+						graphEdges.add(new RoadEdge(graphNodes.get(i*(segments+1) + k+1),graphNodes.get(i*(segments+1) + k)));
+				}
 			}
-		}
 		
-		// create vertical edges
-		for (int i=0; i<segments; i++) {
-			for (int k=1; k<segments; k++) {
-				graphEdges.add(new RoadEdge(graphNodes.get(i*(segments+1) + k), graphNodes.get((i+1)*(segments+1) + k)));
-				graphEdges.add(new RoadEdge(graphNodes.get((i+1)*(segments+1) + k), graphNodes.get(i*(segments+1) + k)));
+			// create vertical edges
+			for (int i=0; i<segments; i++) {
+				for (int k=1; k<segments; k++) {
+					graphEdges.add(new RoadEdge(graphNodes.get(i*(segments+1) + k), graphNodes.get((i+1)*(segments+1) + k)));
+					graphEdges.add(new RoadEdge(graphNodes.get((i+1)*(segments+1) + k), graphNodes.get(i*(segments+1) + k)));
+				}
 			}
-		}
 		
 		
-		// remove nodes with no outgoing edges
-		Iterator<RoadNode> it = graphNodes.iterator();
-		while (it.hasNext()) {
-			RoadNode node = it.next();
-			if (node.getOutEdges().size()==0) {
-				it.remove();
+			// remove nodes with no outgoing edges
+			Iterator<RoadNode> it = graphNodes.iterator();
+			while (it.hasNext()) {
+				RoadNode node = it.next();
+				if (node.getOutEdges().size()==0) {
+					it.remove();
+				}
 			}
-		}
 		
-		// construct the road graph
-		roadNetwork = new RoadNetwork(graphNodes, graphEdges);
+			// construct the road graph
+			roadNetwork = new RoadNetwork(graphNodes, graphEdges);
 		
-		System.out.println("Nodes: " + graphNodes.size() + ", Edges: " + graphEdges.size());
+			System.out.println("Nodes: " + graphNodes.size() + ", Edges: " + graphEdges.size());
+		}
 		
 		
 		if (curSimulation.parameters.containsKey("NODES")) {
@@ -151,9 +175,15 @@ public class ManhattanModel extends MobilityModel {
 			// intialize nodes
 			System.out.println("Initialization of Manhattan model");
 			for (int i=1; i<=nodesNumber; i++) {
-				NodeManhattan node = new NodeManhattan(i, curSimulation);
-				nodes.add(node);
-				node.warmup();
+				if (grid!=null) {
+					NodeManhattanGrid node = new NodeManhattanGrid(i, curSimulation, grid);
+					nodes.add(node);
+					node.warmup();
+				} else {
+					NodeManhattan node = new NodeManhattan(i, curSimulation);
+					nodes.add(node);
+					node.warmup();
+				}
 				curSimulation.uniqueNodes++;
 			}
 			
@@ -178,11 +208,23 @@ public class ManhattanModel extends MobilityModel {
 			}
 		}
 		
-		// warm-up phase
-		
-		for (int i=1; i<5000; i++) {
+		// warm-up phase (until the statistics converge or the maximum duration is reached)
+		WarmupController warmup;
+		if (grid!=null) {
+			// road occupancy is counted on the implicit grid
+			warmup = new WarmupController(curSimulation, nodes, null, WarmupController.DEFAULT_MAX_TIME) {
+				protected int countOccupancy(int[] histogram) {
+					return grid.countOccupancy(histogram);
+				}
+			};
+		} else {
+			warmup = new WarmupController(curSimulation, nodes, roadNetwork.getEdges(), WarmupController.DEFAULT_MAX_TIME);
+		}
+		while (warmup.hasNext()) {
 			next();
+			warmup.update();
 		}
+		warmup.finish();
 		
 		warmupPhase = false;
 		
@@ -206,10 +248,14 @@ public class ManhattanModel extends MobilityModel {
 	 */
 	public void next() {
 		// prepare and update all nodes
-		Iterator<MobileNode> it = nodes.iterator(); 
-		while (it.hasNext()) {
-			MobileNode node = it.next();
-			node.prepare();
+		if (grid!=null) {
+			grid.prepare();
+		} else {
+			Iterator<MobileNode> it = nodes.iterator(); 
+			while (it.hasNext()) {
+				MobileNode node = it.next();
+				node.prepare();
+			}
 		}
 		
 		Iterator<MobileNode> it2 = nodes.iterator();
@@ -230,4 +276,11 @@ public class ManhattanModel extends MobilityModel {
 		}
 	}
 	
+	/**
+	 * Returns the maximum speed of the vehicles (SPEED_MAX)
+	 */
+	public double getMaxSpeed() {
+		return speedMax;
+	}
+	
 }
@@ -33,6 +33,7 @@ package mobility.manhattan;
 import event.*;
 import simulator.*;
 import mobility.MobileNode;
+import mobility.OutputSampler;
 import model.*;
 import java.util.*;
 
@@ -43,8 +44,12 @@ import java.util.*;
 public class NodeManhattan extends MobileNode {
 	
 	Position lastPositionXY = null;
+	/** buffer receiving the position at the current sampling point */
+	Position nextPositionXY = new Position();
 	double dv = 0;
 	Simulator curSimulation;
+	/** sampler generating the events at the output sample times (null if the output step equals the simulation step) */
+	OutputSampler sampler = null;
 	
 	/**
 	 * Creates a new node implementing the Manhattan mobility model
@@ -53,6 +58,10 @@ public class NodeManhattan extends MobileNode {
 	public NodeManhattan(int id, Simulator curSimulation) {
 		super(id, curSimulation);
 		this.curSimulation = curSimulation;
+		if (curSimulation.outputStep!=curSimulation.step) {
+			sampler = new OutputSampler(curSimulation.outputStep);
+			sampledOutput = true;
+		}
 	}
 	
 	
@@ -60,8 +69,8 @@ public class NodeManhattan extends MobileNode {
 		
 				
 		// select a start node
-		road = ManhattanModel.roadNetwork.getEdges().get(curSimulation.rng.nextInt(ManhattanModel.roadNetwork.getEdges().size()));
-		position = curSimulation.rng.nextDouble()*road.length;
+		road = ManhattanModel.roadNetwork.getEdges().get(rng.nextInt(ManhattanModel.roadNetwork.getEdges().size()));
+		position = rng.nextDouble()*road.length;
 		Position posXY= road.getPosition(this);
 		
 		lastPositionXY = posXY;
@@ -79,7 +88,7 @@ public class NodeManhattan extends MobileNode {
 	
 	public void prepare() {
 			// update node velocity
-			dv = (2*curSimulation.rng.nextDouble() - 1)*ManhattanModel.acceleration;
+			dv = (2*rng.nextDouble() - 1)*ManhattanModel.acceleration;
 			
 			// find preceeding driver
 			MobileNode preceedingDriver = road.getFrontVehicle(this);
@@ -111,7 +120,7 @@ public class NodeManhattan extends MobileNode {
 			
 			Iterator<RoadEdge> it = road.getEndNode().getOutEdges().iterator();
 			
-			int direction = curSimulation.rng.nextInt(4);
+			int direction = rng.nextInt(4);
 			
 			while (it.hasNext()) {
 			
@@ -185,14 +194,22 @@ public class NodeManhattan extends MobileNode {
 			
 			
 		
+		} else {
+			// keep the vehicles on the road ordered by their position (vehicles may overtake each other)
+			road.update(this);
 		}
 	
-		Position posXY = road.getPosition(this);
+		Position posXY = road.getPosition(position, nextPositionXY);
 		
 		
 		// generate a new MOVE event
-		if (!ManhattanModel.warmupPhase && curSimulation.time<curSimulation.duration) addEvent(new Move(this, curSimulation.time, lastPositionXY.x, lastPositionXY.y, posXY.x, posXY.y, speed));
+		if (!ManhattanModel.warmupPhase && curSimulation.time<curSimulation.duration) {
+			if (sampler!=null) sampler.record(this, curSimulation.time, curSimulation.step, lastPositionXY.x, lastPositionXY.y, posXY.x, posXY.y, speed);
+			else addMove(curSimulation.time, lastPositionXY.x, lastPositionXY.y, posXY.x, posXY.y, speed);
+		}
 		
+		// reuse the position of the last sampling point as buffer for the next step
+		nextPositionXY = lastPositionXY;
 		lastPositionXY = posXY;
 		
 		return super.next();
@@ -202,6 +219,8 @@ public class NodeManhattan extends MobileNode {
 	 * Clean-up after the end of the simulation 
 	 **/
 	public void finish() {
+		// last partial output interval
+		if (sampler!=null) sampler.flush(this);
 		addEvent(new Leave(this, curSimulation.duration, x, y));
 		curSimulation.removeNode(curSimulation.duration, this);
 		super.finish();
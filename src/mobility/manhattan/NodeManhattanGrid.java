@@ -0,0 +1,141 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+
+package mobility.manhattan;
+
+import event.*;
+import simulator.*;
+import mobility.MobileNode;
+import mobility.OutputSampler;
+import model.*;
+
+/**
+ * Node of the Manhattan mobility model on the implicit grid. The state of the node is kept in the primitive
+ * arrays of the ManhattanGrid, the node itself only generates the events.
+ * The node is still a complete MobileNode (event queue, neighbor set, random stream), since the simulator and
+ * its modules operate on MobileNode objects; the implicit grid only saves the road network objects and the
+ * per-road vehicle lists.
+ */
+public class NodeManhattanGrid extends MobileNode {
+
+	/** implicit grid */
+	ManhattanGrid grid = null;
+	/** index of this vehicle in the grid */
+	int vehicle = -1;
+	/** position at the last sampling point */
+	double lastX = 0;
+	double lastY = 0;
+	/** buffer receiving the position at the current sampling point */
+	Position positionXY = new Position();
+	/** sampler generating the events at the output sample times (null if the output step equals the simulation step) */
+	OutputSampler sampler = null;
+	Simulator curSimulation;
+
+	/**
+	 * Creates a new node on the implicit grid of the Manhattan mobility model
+	 * @param id unique node identifier
+	 * @param curSimulation Simulator
+	 * @param grid Implicit grid
+	 */
+	public NodeManhattanGrid(int id, Simulator curSimulation, ManhattanGrid grid) {
+		super(id, curSimulation);
+		this.curSimulation = curSimulation;
+		this.grid = grid;
+		vehicle = grid.add(rng);
+		if (curSimulation.outputStep!=curSimulation.step) {
+			sampler = new OutputSampler(curSimulation.outputStep);
+			sampledOutput = true;
+		}
+	}
+
+
+	public void warmup() {
+
+		// select a start street
+		int street = rng.nextInt(grid.getStreetCount());
+		grid.position[vehicle] = rng.nextDouble()*grid.length;
+		grid.speed[vehicle] = (ManhattanModel.speedMax + ManhattanModel.speedMin)/2;
+		grid.enter(vehicle, street);
+
+		grid.getPosition(vehicle, positionXY);
+		lastX = positionXY.x;
+		lastY = positionXY.y;
+
+		position = grid.position[vehicle];
+		speed = grid.speed[vehicle];
+	}
+
+
+	public void init() {
+		// generate simulation join event
+		addEvent(new Join(this, 0.0, x, y));
+	}
+
+	/**
+	 * The change in speed is calculated for all vehicles at once by the grid
+	 */
+	public void prepare() {
+	}
+
+
+	/**
+	 * Updates the node
+	 */
+	public boolean next() {
+
+		grid.move(vehicle, curSimulation.step);
+		position = grid.position[vehicle];
+		speed = grid.speed[vehicle];
+
+		grid.getPosition(vehicle, positionXY);
+
+		// generate a new MOVE event
+		if (!ManhattanModel.warmupPhase && curSimulation.time<curSimulation.duration) {
+			if (sampler!=null) sampler.record(this, curSimulation.time, curSimulation.step, lastX, lastY, positionXY.x, positionXY.y, speed);
+			else addMove(curSimulation.time, lastX, lastY, positionXY.x, positionXY.y, speed);
+		}
+
+		lastX = positionXY.x;
+		lastY = positionXY.y;
+
+		return super.next();
+	}
+
+	/**
+	 * Clean-up after the end of the simulation
+	 **/
+	public void finish() {
+		// last partial output interval
+		if (sampler!=null) sampler.flush(this);
+		addEvent(new Leave(this, curSimulation.duration, x, y));
+		curSimulation.removeNode(curSimulation.duration, this);
+		super.finish();
+	}
+
+}
@@ -163,8 +163,7 @@ public class MMTSModel extends MobilityModel {
 					
 				// add node movement
 				double velocity = Math.sqrt((x1-x2)*(x1-x2) + (y1-y2)*(y1-y2))/dt;
-				Move move = new Move(currentNode, t1, x1, y1, x2, y2, velocity);
-				currentNode.addEvent(move);
+				currentNode.addMove(t1, x1, y1, x2, y2, velocity);
 				
 				// read the next event in the file
 				if (!readEvent()) break;
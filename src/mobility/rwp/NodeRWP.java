@@ -56,25 +56,24 @@ public class NodeRWP extends MobileNode {
 	
 	public void init() {
 		
-		if (curSimulation.rng.nextDouble()<RandomWaypointModel.probabilityPause) {
+		if (rng.nextDouble()<RandomWaypointModel.probabilityPause) {
 			// node starts paused
 			
 			// determine length of initial pause
 			double initWaitTime = 0;
 			
 			// u ~ uniform (0,1)
-			double u = curSimulation.rng.nextDouble();
+			double u = rng.nextDouble();
 			double threshold = RandomWaypointModel.waitTimeDistribution.getMin()/RandomWaypointModel.waitTimeDistribution.getMean();
 			
 			if (u<threshold) initWaitTime = u*RandomWaypointModel.waitTimeDistribution.getMean();
 			else initWaitTime = RandomWaypointModel.waitTimeDistribution.getMax()-Math.sqrt((1-u)*(RandomWaypointModel.waitTimeDistribution.getMax()*RandomWaypointModel.waitTimeDistribution.getMax() - RandomWaypointModel.waitTimeDistribution.getMin()*RandomWaypointModel.waitTimeDistribution.getMin()));
 			
 			// initial position
-			Event join = new Join(this, 0.0, curSimulation.rng.nextDouble()*curSimulation.size, curSimulation.rng.nextDouble()*curSimulation.size);
+			Event join = new Join(this, 0.0, rng.nextDouble()*curSimulation.size, rng.nextDouble()*curSimulation.size);
 			addEvent(join);
 			
-			Pause pause = new Pause(this, 0.0, initWaitTime, join.x, join.y);
-			addEvent(pause);
+			addPause(0.0, initWaitTime, join.x, join.y);
 			
 			
 		} else {
@@ -86,27 +85,27 @@ public class NodeRWP extends MobileNode {
 			
 			while (reject) {
 				
-				double x1 = curSimulation.rng.nextDouble();
-				double x2 = curSimulation.rng.nextDouble();
-				double y1 = curSimulation.rng.nextDouble();
-				double y2 = curSimulation.rng.nextDouble();
+				double x1 = rng.nextDouble();
+				double x2 = rng.nextDouble();
+				double y1 = rng.nextDouble();
+				double y2 = rng.nextDouble();
 				
 				
 				double r = Math.sqrt((x2-x1)*(x2-x1) + (y2-y1)*(y2-y1))/RandomWaypointModel.maxDistanceNormalized; 
-				double u = curSimulation.rng.nextDouble();
+				double u = rng.nextDouble();
 				
 				
 				if (u<r) {
 					// accept initial positions
 					reject = false;
 					
-					u = curSimulation.rng.nextDouble();
+					u = rng.nextDouble();
 					// select a random position on the line between (x1,y1) and (x2,y2)
 					double initX = u*x1 + (1-u)*x2;
 					double initY = u*y1 + (1-u)*y2;
 					
 					// initial speed
-					u = curSimulation.rng.nextDouble();
+					u = rng.nextDouble();
 					double initSpeed = Math.pow(RandomWaypointModel.velocityDistribution.getMax(), u)/Math.pow(RandomWaypointModel.velocityDistribution.getMin(), u-1);
 					
 					// node joins the simulation
@@ -132,8 +131,7 @@ public class NodeRWP extends MobileNode {
 					while (curTime < curSimulation.duration - 2) {
 						curX = startX + (endX - startX)*(curTime/curSimulation.duration);
 						curY = startY + (endY - startY)*(curTime/curSimulation.duration);
-						Move move = new Move(this, 0.0, prevX, prevY, curX, curY, initSpeed);
-						addEvent(move);
+						addMove(0.0, prevX, prevY, curX, curY, initSpeed);
 						prevX = curX;
 						prevY = curY;
 						curTime++;
@@ -157,14 +155,12 @@ public class NodeRWP extends MobileNode {
 				
 				// currently moving -> generate a new PAUSE event
 				Move move  = (Move)lastEvent;
-				Pause pause = new Pause(this, lastEventEndTime, RandomWaypointModel.waitTimeDistribution.nextValue(), move.moveToX, move.moveToY);
-				addEvent(pause);
+				addPause(lastEventEndTime, RandomWaypointModel.waitTimeDistribution.nextValue(rng), move.moveToX, move.moveToY);
 				
 			} else if (lastEvent!=null && lastEvent.type==Event.PAUSE) {
 				
 				// generate a new MOVEMENT event
-				Move move = new Move(this, lastEventEndTime, lastEvent.x, lastEvent.y, curSimulation.size*curSimulation.rng.nextDouble(), curSimulation.size*curSimulation.rng.nextDouble(), RandomWaypointModel.velocityDistribution.nextValue());
-				addEvent(move);
+				addMove(lastEventEndTime, lastEvent.x, lastEvent.y, curSimulation.size*rng.nextDouble(), curSimulation.size*rng.nextDouble(), RandomWaypointModel.velocityDistribution.nextValue(rng));
 				
 			}
 			
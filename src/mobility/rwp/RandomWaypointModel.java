@@ -104,8 +104,8 @@ public final class RandomWaypointModel extends MobilityModel {
 			}
 		}
 			
-		velocityDistribution = new UniformDistribution(speedMin, speedMax, curSimulation.seed);
-		waitTimeDistribution = new UniformDistribution(pauseMin, pauseMax, curSimulation.seed);
+		velocityDistribution = new UniformDistribution(speedMin, speedMax, RandomStreams.key(curSimulation.seed, RandomStreams.DISTRIBUTION, 0));
+		waitTimeDistribution = new UniformDistribution(pauseMin, pauseMax, RandomStreams.key(curSimulation.seed, RandomStreams.DISTRIBUTION, 1));
 		
 		
 		// steady-state distribution initialization
@@ -177,4 +177,12 @@ public final class RandomWaypointModel extends MobilityModel {
 			node.finish();
 		}
 	}
+	
+	/**
+	 * Returns the maximum of the velocity distribution
+	 */
+	public double getMaxSpeed() {
+		if (velocityDistribution==null) return Double.POSITIVE_INFINITY;
+		return velocityDistribution.getMax();
+	}
 }
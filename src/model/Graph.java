@@ -37,6 +37,11 @@ import java.util.*;
 /**
  * Graph models a graph representing neighborhood relations between mobile nodes.
  * An edge connecting two nodes indicates a radio communication link between these two nodes.
+ * Besides the lists of nodes and edges, the graph provides a primitive adjacency which is rebuilt in bulk
+ * from the edge list on the first access after the graph has changed (invalidateAdjacency): the nodes are numbered by their position in the node list, the
+ * neighbors of all nodes are stored in one array (compressed rows) and the edges in a map indexed by node pairs.
+ * The arrays are reused, so rebuilding the adjacency in every step allocates no memory once the graph has
+ * reached its maximum size.
  * @author psommer
  *
  */
@@ -46,6 +51,18 @@ public class Graph  {
 	List<GraphNode> nodes = new ArrayList<GraphNode>();
 	/** edges of this graph */
 	List<GraphEdge> edges = new ArrayList<GraphEdge>();
+
+	/** number of nodes in the adjacency */
+	int size = 0;
+	/** neighbors of node i are adjacency[offsets[i]]..adjacency[offsets[i+1]-1] (node indices) */
+	int[] offsets = new int[1];
+	int[] adjacency = new int[0];
+	/** next free position of each row while the adjacency is built */
+	int[] cursor = new int[0];
+	/** edges indexed by the pair of their node indices (see getKey) */
+	LongMap<GraphEdge> edgeMap = new LongMap<GraphEdge>();
+	/** indicates that the adjacency corresponds to the current lists of nodes and edges */
+	boolean adjacencyValid = false;
 	
 	/**
 	 * Constructs an empty graph
@@ -57,16 +74,19 @@ public class Graph  {
 	 * Sets the nodes for this graph
 	 * @param nodes Collection of nodes
 	 */
-	public void setNodes(Collection<GraphNode> nodes) {
+	public void setNodes(Collection<? extends GraphNode> nodes) {
 		this.nodes = new ArrayList<GraphNode>(nodes);
+		for (GraphNode node : this.nodes) node.graph = this;
+		adjacencyValid = false;
 	}
 	
 	/**
 	 * Sets the edge for this graph 
 	 * @param edges Collection of edges
 	 */
-	public void setEdges(Collection<GraphEdge> edges) {
+	public void setEdges(Collection<? extends GraphEdge> edges) {
 		this.edges = new ArrayList<GraphEdge>(edges);
+		adjacencyValid = false;
 	}
 	
 	/**
@@ -84,5 +104,152 @@ public class Graph  {
 	public List<GraphEdge> getEdges() {
 		return edges;
 	}
+
+	/**
+	 * Marks the adjacency as outdated after the lists of nodes or edges have been modified, it is rebuilt on
+	 * the next access
+	 */
+	public void invalidateAdjacency() {
+		adjacencyValid = false;
+	}
+
+	/**
+	 * Rebuilds the primitive adjacency from the current lists of nodes and edges. Edges of nodes which are
+	 * not contained in the node list are ignored.
+	 */
+	public void rebuildAdjacency() {
+		adjacencyValid = true;
+		size = nodes.size();
+		for (int i=0; i<size; i++) nodes.get(i).index = i;
+		if (offsets.length<size+1) {
+			offsets = new int[Math.max(2*offsets.length, size+1)];
+			cursor = new int[offsets.length];
+		}
+		Arrays.fill(offsets, 0, size+1, 0);
+
+		// count the neighbors of each node
+		int edgeCount = edges.size();
+		edgeMap.clear(edgeCount);
+		for (int i=0; i<edgeCount; i++) {
+			GraphEdge edge = edges.get(i);
+			if (!contains(edge.nodeA) || !contains(edge.nodeB)) continue;
+			offsets[edge.nodeA.index+1]++;
+			offsets[edge.nodeB.index+1]++;
+		}
+		for (int i=0; i<size; i++) offsets[i+1]+=offsets[i];
+		if (adjacency.length<offsets[size]) adjacency = new int[Math.max(2*adjacency.length, offsets[size])];
+
+		// fill the rows
+		System.arraycopy(offsets, 0, cursor, 0, size);
+		for (int i=0; i<edgeCount; i++) {
+			GraphEdge edge = edges.get(i);
+			if (!contains(edge.nodeA) || !contains(edge.nodeB)) continue;
+			int a = edge.nodeA.index;
+			int b = edge.nodeB.index;
+			adjacency[cursor[a]++] = b;
+			adjacency[cursor[b]++] = a;
+			edgeMap.put(getKey(a, b), edge);
+		}
+	}
+
+	/**
+	 * Returns whether a node is numbered in the current adjacency
+	 */
+	boolean contains(GraphNode node) {
+		return node.index>=0 && node.index<size && nodes.get(node.index)==node;
+	}
+
+	/**
+	 * Returns the key of the edge between two nodes, independent of the order of the nodes
+	 * @param indexA Index of the first node
+	 * @param indexB Index of the second node
+	 * @return Key
+	 */
+	static long getKey(int indexA, int indexB) {
+		return ((long)Math.min(indexA, indexB)<<32) | Math.max(indexA, indexB);
+	}
+
+	/**
+	 * Returns the index of a node in the adjacency (valid until the next rebuild)
+	 * @param node Node
+	 * @return Index or -1 if the node is not contained in the adjacency
+	 */
+	public int getIndex(GraphNode node) {
+		if (!adjacencyValid) rebuildAdjacency();
+		return contains(node) ? node.index : -1;
+	}
+
+	/**
+	 * Returns the number of nodes in the adjacency
+	 * @return Number of nodes
+	 */
+	public int getSize() {
+		if (!adjacencyValid) rebuildAdjacency();
+		return size;
+	}
+
+	/**
+	 * Returns the degree of a node in the adjacency
+	 * @param index Index of the node
+	 * @return Number of neighbors
+	 */
+	public int getDegree(int index) {
+		if (!adjacencyValid) rebuildAdjacency();
+		return offsets[index+1] - offsets[index];
+	}
+
+	/**
+	 * Returns a neighbor of a node in the adjacency
+	 * @param index Index of the node
+	 * @param k Number of the neighbor (0..degree-1)
+	 * @return Index of the neighbor
+	 */
+	public int getNeighbor(int index, int k) {
+		if (!adjacencyValid) rebuildAdjacency();
+		return adjacency[offsets[index] + k];
+	}
+
+	/**
+	 * Returns the start positions of the rows of the adjacency (size+1 valid entries), for algorithms
+	 * iterating over the whole graph
+	 * @return Row offsets
+	 */
+	public int[] getOffsets() {
+		if (!adjacencyValid) rebuildAdjacency();
+		return offsets;
+	}
+
+	/**
+	 * Returns the neighbor indices of all nodes (rows given by getOffsets)
+	 * @return Neighbor indices
+	 */
+	public int[] getAdjacency() {
+		if (!adjacencyValid) rebuildAdjacency();
+		return adjacency;
+	}
+
+	/**
+	 * Returns whether two nodes are connected by an edge in the adjacency
+	 * @param nodeA First node
+	 * @param nodeB Second node
+	 * @return True if the nodes are neighbors
+	 */
+	public boolean isConnected(GraphNode nodeA, GraphNode nodeB) {
+		if (!adjacencyValid) rebuildAdjacency();
+		if (!contains(nodeA) || !contains(nodeB)) return false;
+		return edgeMap.contains(getKey(nodeA.index, nodeB.index));
+	}
+
+	/**
+	 * Returns the edge between two nodes in the adjacency
+	 * @param nodeA First node
+	 * @param nodeB Second node
+	 * @return Edge or null if the nodes are not neighbors
+	 */
+	public GraphEdge getEdge(GraphNode nodeA, GraphNode nodeB) {
+		if (!adjacencyValid) rebuildAdjacency();
+		if (!contains(nodeA) || !contains(nodeB)) return null;
+		return edgeMap.get(getKey(nodeA.index, nodeB.index));
+	}
 	
 }
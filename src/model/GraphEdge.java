@@ -57,6 +57,22 @@ public class GraphEdge {
 		nodeB.add(this);
 	}
 	
+	/**
+	 * Constructs an edge without nodes, which are set with setNodes (e.g. for edges which are reused)
+	 */
+	protected GraphEdge() {
+	}
+
+	/**
+	 * Sets the nodes of this edge without adding the edge to the edge lists of the nodes
+	 * @param nodeA first graph node
+	 * @param nodeB second graph node
+	 */
+	protected void setNodes(GraphNode nodeA, GraphNode nodeB) {
+		this.nodeA = nodeA;
+		this.nodeB = nodeB;
+	}
+
 	/**
 	 * Gets the first node of this (undirected) edge
 	 * @return NodeA
@@ -40,8 +40,12 @@ import java.util.*;
  */
 public class GraphNode extends Position {
 
-	/** list of edges containing this node */
-	List<GraphEdge> edges = new LinkedList<GraphEdge>();
+	/** list of edges containing this node (edges constructed with the nodes, see GraphEdge) */
+	List<GraphEdge> edges = new ArrayList<GraphEdge>(4);
+	/** graph whose node list contains this node (set by Graph.setNodes) */
+	Graph graph = null;
+	/** index of this node in the primitive adjacency of its graph (see Graph.rebuildAdjacency) */
+	int index = -1;
 	
 	/**
 	 * Adds a new edge to this node's list of edges
@@ -60,30 +64,30 @@ public class GraphNode extends Position {
 	}
 	
 	/**
-	 * Returns the node degree (number of edges)
+	 * Returns the node degree (number of edges). For a node of a graph, the degree is taken from the adjacency
+	 * of the graph, which also contains the edges that are not added to the edge lists of the nodes (e.g. links).
 	 * @return node degree
 	 */
 	public int getDegree() {
+		if (graph!=null) {
+			int i = graph.getIndex(this);
+			if (i>=0) return graph.getDegree(i);
+		}
 		return edges.size();
 	}
 	
 	/**
-	 * Returns the edge connecting this node with the given GraphNode
+	 * Returns the edge connecting this node with the given GraphNode. For a node of a graph, the edge is looked
+	 * up in the adjacency of the graph.
 	 * @param node GraphNode which is related to the edge
 	 * @return Edge between this node and the given node or null if no such edge exists
 	 */
 	public GraphEdge getEdge(GraphNode node) {
-		GraphEdge edge = null;
-		// iterator over all edges
-		Iterator<GraphEdge> it = edges.iterator();
-		while (it.hasNext()) {
-			GraphEdge temp = it.next();
-			if ((temp.nodeA==this && temp.nodeB==node) || (temp.nodeB==this && temp.nodeA==node)) {
-				edge = temp;
-				break;
-			}
+		if (graph!=null && graph.getIndex(this)>=0) return graph.getEdge(this, node);
+		for (GraphEdge edge : edges) {
+			if ((edge.nodeA==this && edge.nodeB==node) || (edge.nodeB==this && edge.nodeA==node)) return edge;
 		}
-		return edge;
+		return null;
 	}
 	
 	
@@ -0,0 +1,105 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+package model;
+
+/**
+ * LongDoubleMap is a hash map from primitive long keys to primitive double values, based on LongTable.
+ */
+public class LongDoubleMap extends LongTable {
+
+	/** values of the slots */
+	double[] values;
+
+
+	/**
+	 * Creates an empty map
+	 */
+	public LongDoubleMap() {
+		super();
+	}
+
+	/**
+	 * Creates an empty map
+	 * @param capacity Expected number of entries
+	 */
+	public LongDoubleMap(int capacity) {
+		super(capacity);
+	}
+
+	/**
+	 * Returns the value of a key
+	 * @param key Key
+	 * @param defaultValue Value returned if the key is not contained in the map
+	 * @return Value
+	 */
+	public double get(long key, double defaultValue) {
+		int i = find(key);
+		return (i<0) ? defaultValue : values[i];
+	}
+
+	/**
+	 * Sets the value of a key
+	 * @param key Key
+	 * @param value Value
+	 */
+	public void put(long key, double value) {
+		int i = find(key);
+		if (i<0) i = insert(key);
+		values[i] = value;
+	}
+
+	/**
+	 * Removes a key
+	 * @param key Key
+	 * @return True if the key was contained in the map
+	 */
+	public boolean remove(long key) {
+		int i = find(key);
+		if (i<0) return false;
+		removeSlot(i);
+		return true;
+	}
+
+	void allocateValues(int slots) {
+		values = new double[slots];
+	}
+
+	Object getValues() {
+		return values;
+	}
+
+	void copyValue(Object oldValues, int from, int to) {
+		values[to] = ((double[])oldValues)[from];
+	}
+
+	void moveValue(int from, int to) {
+		values[to] = values[from];
+	}
+
+}
@@ -0,0 +1,256 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+package model;
+
+import java.util.Arrays;
+
+/**
+ * LongTable is the hash table with primitive long keys shared by LongMap and LongDoubleMap (open addressing
+ * with linear probing, removal by moving the following entries of the probe sequence backwards). The keys are
+ * mixed before they are hashed, so that keys composed of two integers (e.g. node pairs or grid cells) are spread
+ * over the table, and no entry objects are allocated. Used as is, the table is a set of keys; the subclasses keep
+ * their values in arrays parallel to the keys and move them through the value hooks.
+ */
+public class LongTable {
+
+	/** keys of the slots */
+	long[] keys;
+	/** indicates the occupied slots */
+	boolean[] used;
+	/** mask for the slot index (number of slots is a power of two) */
+	int mask;
+	/** number of entries */
+	int size = 0;
+
+
+	/**
+	 * Creates an empty table
+	 */
+	public LongTable() {
+		this(16);
+	}
+
+	/**
+	 * Creates an empty table
+	 * @param capacity Expected number of entries
+	 */
+	public LongTable(int capacity) {
+		allocate(getSlots(16, capacity));
+	}
+
+	/**
+	 * Returns the number of slots for the given number of entries
+	 */
+	static int getSlots(int slots, int capacity) {
+		while (slots<2*capacity+2) slots<<=1;
+		return slots;
+	}
+
+	/**
+	 * Returns the slot of a key
+	 */
+	int getSlot(long key) {
+		long h = key*0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h>>>32)) & mask;
+	}
+
+	/**
+	 * Returns the slot of a key
+	 * @return Slot or -1 if the key is not contained in the table
+	 */
+	int find(long key) {
+		for (int i=getSlot(key); used[i]; i=(i+1) & mask) {
+			if (keys[i]==key) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Adds a key which is not contained in the table, the table grows before the key is added
+	 * @return Slot of the key
+	 */
+	int insert(long key) {
+		if (size+1>keys.length/2) resize(2*keys.length);
+		int i = getSlot(key);
+		while (used[i]) i = (i+1) & mask;
+		keys[i] = key;
+		used[i] = true;
+		size++;
+		return i;
+	}
+
+	/**
+	 * Frees a slot and moves the following entries of the probe sequence into the free slot
+	 */
+	void removeSlot(int i) {
+		int free = i;
+		for (int j=(i+1) & mask; used[j]; j=(j+1) & mask) {
+			int slot = getSlot(keys[j]);
+			if (((j-slot) & mask)>=((j-free) & mask)) {
+				keys[free] = keys[j];
+				moveValue(j, free);
+				free = j;
+			}
+		}
+		used[free] = false;
+		clearValue(free);
+		size--;
+	}
+
+	/**
+	 * Returns whether a key is contained in the table
+	 * @param key Key
+	 * @return True if the table contains the key
+	 */
+	public boolean contains(long key) {
+		return find(key)>=0;
+	}
+
+	/**
+	 * Adds a key
+	 * @param key Key
+	 * @return True if the key was not contained in the table
+	 */
+	public boolean add(long key) {
+		if (find(key)>=0) return false;
+		insert(key);
+		return true;
+	}
+
+	/**
+	 * Removes all entries
+	 */
+	public void clear() {
+		Arrays.fill(used, false);
+		clearValues();
+		size = 0;
+	}
+
+	/**
+	 * Removes all entries and makes sure that the given number of entries can be added without resizing the
+	 * table, so a table which is refilled in every step allocates no memory once it has reached its maximum size
+	 * @param capacity Expected number of entries
+	 */
+	public void clear(int capacity) {
+		int slots = getSlots(keys.length, capacity);
+		if (slots!=keys.length) {
+			allocate(slots);
+			size = 0;
+		} else {
+			clear();
+		}
+	}
+
+	/**
+	 * Returns the number of entries
+	 * @return Number of entries
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of slots, entries are iterated with the slot indices 0..getCapacity()-1
+	 * @return Number of slots
+	 */
+	public int getCapacity() {
+		return keys.length;
+	}
+
+	/**
+	 * Returns whether a slot is occupied
+	 * @param slot Slot index
+	 * @return True if the slot holds an entry
+	 */
+	public boolean isUsed(int slot) {
+		return used[slot];
+	}
+
+	/**
+	 * Returns the key in a slot
+	 * @param slot Slot index
+	 * @return Key
+	 */
+	public long getKey(int slot) {
+		return keys[slot];
+	}
+
+	/**
+	 * Replaces the table by an empty table with the given number of slots
+	 */
+	void allocate(int slots) {
+		keys = new long[slots];
+		used = new boolean[slots];
+		mask = slots-1;
+		allocateValues(slots);
+	}
+
+	void resize(int slots) {
+		long[] oldKeys = keys;
+		boolean[] oldUsed = used;
+		Object oldValues = getValues();
+		allocate(slots);
+		for (int j=0; j<oldKeys.length; j++) {
+			if (!oldUsed[j]) continue;
+			int i = getSlot(oldKeys[j]);
+			while (used[i]) i = (i+1) & mask;
+			keys[i] = oldKeys[j];
+			used[i] = true;
+			copyValue(oldValues, j, i);
+		}
+	}
+
+	/** value hooks of the subclasses (no values in the table itself) */
+
+	/** allocates the value array for the given number of slots */
+	void allocateValues(int slots) {
+	}
+
+	/** returns the value array */
+	Object getValues() {
+		return null;
+	}
+
+	/** copies a value of an old value array into a slot after resizing */
+	void copyValue(Object values, int from, int to) {
+	}
+
+	/** moves a value within the table */
+	void moveValue(int from, int to) {
+	}
+
+	/** frees the value of a slot */
+	void clearValue(int slot) {
+	}
+
+	/** frees all values */
+	void clearValues() {
+	}
+
+}
@@ -0,0 +1,255 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+package model;
+
+import java.util.*;
+
+/**
+ * ObstacleIndex is a spatial index over the line segments of obstacles (e.g. building outlines) for
+ * line-of-sight queries. The segments are registered in all cells of a uniform grid which are covered by their
+ * bounding box, stored in compressed rows (cellStart, cellSegments). A query walks the cells traversed by the
+ * query segment (after clipping it to the grid) and tests only the segments registered in these cells, so its
+ * effort depends on the number of walls near the line of sight rather than on the number of walls in the map.
+ * Queries use a mark per segment to test each segment once and must not be performed concurrently.
+ */
+public class ObstacleIndex {
+
+	/** end points of the segments */
+	double[] x1;
+	double[] y1;
+	double[] x2;
+	double[] y2;
+	/** number of segments */
+	int count = 0;
+
+	/** origin, cell size and dimensions of the grid */
+	double minX = 0;
+	double minY = 0;
+	double cellSize = 1;
+	int width = 1;
+	int height = 1;
+	/** segments of cell c are cellSegments[cellStart[c]]..cellSegments[cellStart[c+1]-1] */
+	int[] cellStart = new int[2];
+	int[] cellSegments = new int[0];
+
+	/** query which has last tested each segment */
+	int[] marks;
+	int query = 0;
+	/** number of segment intersection tests performed */
+	long tests = 0;
+
+
+	/**
+	 * Constructs the index over a set of segments
+	 * @param segments Line segments of the obstacles
+	 */
+	public ObstacleIndex(List<Line> segments) {
+		count = segments.size();
+		x1 = new double[count];
+		y1 = new double[count];
+		x2 = new double[count];
+		y2 = new double[count];
+		marks = new int[count];
+		if (count==0) return;
+
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		minX = Double.POSITIVE_INFINITY;
+		minY = Double.POSITIVE_INFINITY;
+		double length = 0;
+		for (int i=0; i<count; i++) {
+			Line line = segments.get(i);
+			x1[i] = line.x1;
+			y1[i] = line.y1;
+			x2[i] = line.x2;
+			y2[i] = line.y2;
+			minX = Math.min(minX, Math.min(line.x1, line.x2));
+			minY = Math.min(minY, Math.min(line.y1, line.y2));
+			maxX = Math.max(maxX, Math.max(line.x1, line.x2));
+			maxY = Math.max(maxY, Math.max(line.y1, line.y2));
+			length+=line.length;
+		}
+
+		// cells of about the mean segment length, at most about four cells per segment
+		cellSize = Math.max(length/count, Math.sqrt((maxX - minX)*(maxY - minY)/(4.0*count)));
+		if (cellSize<=0) cellSize = 1;
+		width = (int)((maxX - minX)/cellSize) + 1;
+		height = (int)((maxY - minY)/cellSize) + 1;
+
+		// count the segments of each cell, then fill the rows
+		cellStart = new int[width*height + 1];
+		for (int pass=0; pass<2; pass++) {
+			for (int i=0; i<count; i++) {
+				int cx0 = getCellX(Math.min(x1[i], x2[i]));
+				int cx1 = getCellX(Math.max(x1[i], x2[i]));
+				int cy0 = getCellY(Math.min(y1[i], y2[i]));
+				int cy1 = getCellY(Math.max(y1[i], y2[i]));
+				for (int cy=cy0; cy<=cy1; cy++) {
+					for (int cx=cx0; cx<=cx1; cx++) {
+						int c = cy*width + cx;
+						if (pass==0) cellStart[c+1]++;
+						else cellSegments[cellStart[c]++] = i;
+					}
+				}
+			}
+			if (pass==0) {
+				for (int c=0; c<width*height; c++) cellStart[c+1]+=cellStart[c];
+				cellSegments = new int[cellStart[width*height]];
+			} else {
+				// restore the start positions
+				for (int c=width*height; c>0; c--) cellStart[c] = cellStart[c-1];
+				cellStart[0] = 0;
+			}
+		}
+	}
+
+	int getCellX(double x) {
+		return Math.max(0, Math.min(width-1, (int)Math.floor((x - minX)/cellSize)));
+	}
+
+	int getCellY(double y) {
+		return Math.max(0, Math.min(height-1, (int)Math.floor((y - minY)/cellSize)));
+	}
+
+	/**
+	 * Returns the number of segments
+	 * @return Number of segments
+	 */
+	public int getSegmentCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the number of segment intersection tests performed so far
+	 * @return Number of tests
+	 */
+	public long getTests() {
+		return tests;
+	}
+
+	/**
+	 * Returns whether the line of sight between two points is free
+	 * @param ax x-coordinate of the first point
+	 * @param ay y-coordinate of the first point
+	 * @param bx x-coordinate of the second point
+	 * @param by y-coordinate of the second point
+	 * @return True if no segment intersects the line between the points
+	 */
+	public boolean isVisible(double ax, double ay, double bx, double by) {
+		if (count==0) return true;
+
+		// clip the query segment to the grid (Liang-Barsky)
+		double dx = bx - ax;
+		double dy = by - ay;
+		double t0 = 0;
+		double t1 = 1;
+		double maxX = minX + width*cellSize;
+		double maxY = minY + height*cellSize;
+		double[] p = {-dx, dx, -dy, dy};
+		double[] q = {ax - minX, maxX - ax, ay - minY, maxY - ay};
+		for (int k=0; k<4; k++) {
+			if (p[k]==0) {
+				if (q[k]<0) return true;
+			} else {
+				double t = q[k]/p[k];
+				if (p[k]<0) t0 = Math.max(t0, t);
+				else t1 = Math.min(t1, t);
+			}
+		}
+		if (t0>t1) return true;
+
+		if (++query==0) {
+			Arrays.fill(marks, 0);
+			query = 1;
+		}
+
+		// walk the cells traversed by the clipped segment
+		double gx = (ax + t0*dx - minX)/cellSize;
+		double gy = (ay + t0*dy - minY)/cellSize;
+		int cx = getCellX(ax + t0*dx);
+		int cy = getCellY(ay + t0*dy);
+		int endX = getCellX(ax + t1*dx);
+		int endY = getCellY(ay + t1*dy);
+		int stepX = (dx>0) ? 1 : -1;
+		int stepY = (dy>0) ? 1 : -1;
+		double cellDx = dx/cellSize;
+		double cellDy = dy/cellSize;
+		double nextX = (cellDx==0) ? Double.POSITIVE_INFINITY : (cx + (stepX>0 ? 1 : 0) - gx)/cellDx + t0;
+		double nextY = (cellDy==0) ? Double.POSITIVE_INFINITY : (cy + (stepY>0 ? 1 : 0) - gy)/cellDy + t0;
+		double deltaX = (cellDx==0) ? Double.POSITIVE_INFINITY : Math.abs(1/cellDx);
+		double deltaY = (cellDy==0) ? Double.POSITIVE_INFINITY : Math.abs(1/cellDy);
+		int steps = Math.abs(endX - cx) + Math.abs(endY - cy);
+		for (int s=0; ; s++) {
+			int c = cy*width + cx;
+			for (int k=cellStart[c]; k<cellStart[c+1]; k++) {
+				int i = cellSegments[k];
+				if (marks[i]==query) continue;
+				marks[i] = query;
+				tests++;
+				if (intersects(ax, ay, bx, by, i)) return false;
+			}
+			if (s>=steps || (cx==endX && cy==endY)) break;
+			if (nextX<nextY) {
+				nextX+=deltaX;
+				cx+=stepX;
+			} else {
+				nextY+=deltaY;
+				cy+=stepY;
+			}
+			if (cx<0 || cx>=width || cy<0 || cy>=height) break;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether the segment from a to b intersects (or touches) a segment of the index
+	 */
+	boolean intersects(double ax, double ay, double bx, double by, int i) {
+		double d1 = cross(ax, ay, bx, by, x1[i], y1[i]);
+		double d2 = cross(ax, ay, bx, by, x2[i], y2[i]);
+		if ((d1>0 && d2>0) || (d1<0 && d2<0)) return false;
+		double d3 = cross(x1[i], y1[i], x2[i], y2[i], ax, ay);
+		double d4 = cross(x1[i], y1[i], x2[i], y2[i], bx, by);
+		if ((d3>0 && d4>0) || (d3<0 && d4<0)) return false;
+		if (d1==0 && d2==0) {
+			// collinear: the segments intersect if their bounding boxes overlap
+			return Math.max(ax, bx)>=Math.min(x1[i], x2[i]) && Math.min(ax, bx)<=Math.max(x1[i], x2[i])
+					&& Math.max(ay, by)>=Math.min(y1[i], y2[i]) && Math.min(ay, by)<=Math.max(y1[i], y2[i]);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the cross product of (b-a) and (c-a)
+	 */
+	static double cross(double ax, double ay, double bx, double by, double cx, double cy) {
+		return (bx - ax)*(cy - ay) - (by - ay)*(cx - ax);
+	}
+
+}
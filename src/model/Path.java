@@ -47,6 +47,8 @@ public class Path {
 	
 	/** total path length */
 	double length = 0;
+	/** total path weight (travel time at the speed limit) */
+	double weight = 0;
 	
 	/**
 	 * Constructs a Path
@@ -58,9 +60,26 @@ public class Path {
 			RoadEdge road = it.next();
 			roads.add(road);
 			length+=road.length;
+			weight+=road.weight;
 		}
 	}
 	
+	/**
+	 * Returns the total length of this path
+	 * @return path length
+	 */
+	public double getLength() {
+		return length;
+	}
+	
+	/**
+	 * Returns the total weight of this path (sum of road weights)
+	 * @return path weight
+	 */
+	public double getWeight() {
+		return weight;
+	}
+	
 	/**
 	 * Polls the next road from this path 
 	 * @return Next road on the path
@@ -66,23 +66,25 @@ public class RoadEdge {
 	boolean trafficLightRed = false;
 	/** list of line segments following the course of the road */
 	public List<Line> segments = null;
-	/** list of vehicles on this road */
-	ArrayList<MobileNode> vehicles = new ArrayList<MobileNode>(); 
-	
-	/**
-	 * This comparator compares two mobile nodes based on the position relative
-	 * to the current street
-	 * @author psommer
-	 *
-	 */
-	class CarOrderComparator implements Comparator<MobileNode> {
-		public int compare(MobileNode nodeA, MobileNode nodeB) {
-			return Double.compare(nodeA.position, nodeB.position);
-		}
-	}
-	
-	/** compares the order of two cars on the same road */
-	CarOrderComparator comparator = new CarOrderComparator();
+	/** cumulative length of the road at the end of each segment */
+	double[] segmentEnd = null;
+	/** length of each segment */
+	double[] segmentLength = null;
+	/** start and end points of each segment */
+	double[] segmentX1 = null;
+	double[] segmentY1 = null;
+	double[] segmentX2 = null;
+	double[] segmentY2 = null;
+	/** rearmost vehicle on this road (head of the occupancy list) */
+	MobileNode rearmost = null;
+	/** foremost vehicle on this road (tail of the occupancy list) */
+	MobileNode foremost = null;
+	/** number of vehicles on this road */
+	int vehicleCount = 0;
+	/** vehicles in the order of the occupancy list for the binary search by position, rebuilt after the list has changed */
+	MobileNode[] order = new MobileNode[0];
+	int orderSize = 0;
+	boolean orderValid = true;
 	
 	/**
 	 * Constructs a road between the two given intersections. 
@@ -128,6 +130,26 @@ public class RoadEdge {
 		this.segments = new ArrayList<Line>(segments);
 		// set road length
 		this.length = length;
+		
+		// precompute the segment offsets for the position lookup
+		int n = this.segments.size();
+		segmentEnd = new double[n];
+		segmentLength = new double[n];
+		segmentX1 = new double[n];
+		segmentY1 = new double[n];
+		segmentX2 = new double[n];
+		segmentY2 = new double[n];
+		double distance = 0;
+		for (int i=0; i<n; i++) {
+			Line segment = this.segments.get(i);
+			distance+=segment.length;
+			segmentEnd[i] = distance;
+			segmentLength[i] = segment.length;
+			segmentX1[i] = segment.x1;
+			segmentY1[i] = segment.y1;
+			segmentX2[i] = segment.x2;
+			segmentY2[i] = segment.y2;
+		}
 	}
 	
 	/**
@@ -163,33 +185,44 @@ public class RoadEdge {
 	 * @return Position of the mobile node
 	 */
 	public Position getPosition(MobileNode node) {
+		return getPosition(node.position, new Position());
+	}
+	
+	/**
+	 * Calculates the coordinates of a position on this road without allocating a new object.
+	 * The segment containing the position is found by a binary search over the cumulative segment lengths.
+	 * @param position Position on this road
+	 * @param result Position object receiving the coordinates
+	 * @return The result object or null if the position is beyond the end of the road
+	 */
+	public Position getPosition(double position, Position result) {
 		
-		
-		if (segments!=null) {
+		if (segmentEnd!=null) {
 			
-			double distance = 0;
-			Iterator<Line> it = segments.iterator();
-			while (it.hasNext()) {
-				Line segment = it.next();
-				distance+=segment.length;
-				
-				if (node.position<=distance) {
-					double fraction = 1 - (distance - node.position)/segment.length;
-					return new Position(segment.x1 + fraction*(segment.x2-segment.x1), segment.y1 + fraction*(segment.y2-segment.y1));
-				}
+			// find the first segment ending at or after the position
+			int low = 0, high = segmentEnd.length;
+			while (low<high) {
+				int mid = (low+high)>>>1;
+				if (segmentEnd[mid]<position) low = mid+1;
+				else high = mid;
 			}
 			
-			System.out.println("Position: " + node.position + " length: " + length);
+			if (low==segmentEnd.length) {
+				System.err.println("Position " + position + " is beyond the end of the road (length " + length + ")");
+				return null;
+			}
 			
-			return null;
+			double fraction = 1 - (segmentEnd[low] - position)/segmentLength[low];
+			result.x = segmentX1[low] + fraction*(segmentX2[low]-segmentX1[low]);
+			result.y = segmentY1[low] + fraction*(segmentY2[low]-segmentY1[low]);
 			
 		} else {
-			double fraction = node.position/length;
-			return new Position(nodeA.x + fraction*(nodeB.x-nodeA.x), nodeA.y + fraction*(nodeB.y-nodeA.y));
+			double fraction = position/length;
+			result.x = nodeA.x + fraction*(nodeB.x-nodeA.x);
+			result.y = nodeA.y + fraction*(nodeB.y-nodeA.y);
 		}
 		
-		
-		
+		return result;
 	}
 	
 	/**
@@ -210,59 +243,97 @@ public class RoadEdge {
 	
 
 	/**
-	 * Updates the current position of a vehicle on this street
+	 * Updates the current position of a vehicle on this street.
+	 * The vehicles on a road are kept in a doubly linked list ordered by their position. A vehicle entering the
+	 * road is inserted by walking from the rear end of the road, a vehicle already on the road only changes
+	 * its place in the list if it has overtaken (or fallen behind) a neighboring vehicle.
 	 * @param car Vehicle which updated its position
 	 */
 	public void update(MobileNode car) {
 		
+		MobileNode lastForemost = foremost;
 		
-		// remove vehicle
-		vehicles.remove(car);
-		
-		// find the correct insert position for this vehicle
-	    int index = Collections.binarySearch(vehicles, car, comparator);
-	
-	    // re-add the vehicle at the correct position
-	    if (index < 0) {
-	        vehicles.add(-index-1, car);
-	    } else {
-	    	vehicles.add(index, car);
-	    }
-
-	    // set this street as the current street
-		car.road = this;
-		
-		/*
-		double lastPosition = 0;
-		int lastId = -1;
-		
-		for (int i=0; i<vehicles.size();i++) {
+		if (car.occupiedRoad!=this) {
 			
-			MobileNode current = vehicles.get(i);
+			// vehicle enters this road
+			if (car.occupiedRoad!=null) car.occupiedRoad.remove(car);
 			
-			if (current.position<0 || current.position>length) System.out.println("Car not inside road bounds");
+			// find the first vehicle which is not behind the new vehicle
+			MobileNode next = rearmost;
+			while (next!=null && next.position<car.position) next = next.leader;
 			
-			if (current.position<lastPosition) {
-				System.out.println("error in car order");
+			if (next==null) insertAfter(foremost, car);
+			else insertAfter(next.follower, car);
+			
+			car.occupiedRoad = this;
+			vehicleCount++;
+			
+		} else {
+			
+			// move the vehicle forward while it is in front of its leader
+			while (car.leader!=null && car.leader.position<car.position) {
+				MobileNode leader = car.leader;
+				unlink(car);
+				insertAfter(leader, car);
 			}
 			
-			//if (current.position-lastPosition<1.0 && lastId!=-1) System.out.println("Road " + id + " (" + vehicles.size() + " vehicles): gap to close: " + (current.position - lastPosition) + " first: (" + lastId + ") " + lastPosition + " next (" + current.id + ") " + current.position);
-			lastPosition = current.position;
-			lastId = current.id;
+			// move the vehicle backward while it is behind its follower
+			while (car.follower!=null && car.follower.position>car.position) {
+				MobileNode follower = car.follower;
+				unlink(car);
+				insertAfter(follower.follower, car);
+			}
 		}
-		*/
 		
+	    // set this street as the current street
+		car.road = this;
 		
+		// the intersection at the end of the road is informed if the foremost vehicle has changed
+		if (foremost!=lastForemost) nodeB.foremostVehicleChanged();
 		
 	}
 	
+	/**
+	 * Inserts a vehicle into the occupancy list
+	 * @param follower Vehicle directly behind the inserted vehicle (null to insert at the rear end of the road)
+	 * @param car Vehicle to insert
+	 */
+	void insertAfter(MobileNode follower, MobileNode car) {
+		orderValid = false;
+		MobileNode leader = (follower==null) ? rearmost : follower.leader;
+		car.follower = follower;
+		car.leader = leader;
+		if (follower==null) rearmost = car;
+		else follower.leader = car;
+		if (leader==null) foremost = car;
+		else leader.follower = car;
+	}
+	
+	/**
+	 * Removes a vehicle from the occupancy list without changing the vehicle count
+	 * @param car Vehicle to remove
+	 */
+	void unlink(MobileNode car) {
+		orderValid = false;
+		if (car.follower==null) rearmost = car.leader;
+		else car.follower.leader = car.leader;
+		if (car.leader==null) foremost = car.follower;
+		else car.leader.follower = car.follower;
+		car.leader = null;
+		car.follower = null;
+	}
 	
 	/**
 	 * Removes the car from the list of vehicle on this Street
 	 * @param car Vehicle to remove from this street
 	 */
 	public void remove(MobileNode car) {
-		vehicles.remove(car);
+		if (car.occupiedRoad!=this) return;
+		MobileNode lastForemost = foremost;
+		unlink(car);
+		car.occupiedRoad = null;
+		vehicleCount--;
+		if (foremost!=lastForemost) nodeB.foremostVehicleChanged();
 	}
 	
 	/**
@@ -270,11 +341,7 @@ public class RoadEdge {
 	 * @return Vehicle in the rearmost position on this road or null if there is no vehicle on this road.
 	 */
 	public MobileNode getRearmostVehicle() {
-		try {
-			return vehicles.get(0);
-		} catch (Exception e){
-			return null;
-		}
+		return rearmost;
 	}
 	
 	/**
@@ -282,11 +349,7 @@ public class RoadEdge {
 	 * @return Vehicle in the foremost position on this road or null if there is no vehicle on this road.
 	 */
 	public MobileNode getForemostVehicle() {
-		try {
-			return vehicles.get(vehicles.size()-1);
-		} catch (Exception e){
-			return null;
-		}
+		return foremost;
 	}
 	
 	
@@ -296,23 +359,74 @@ public class RoadEdge {
 	 * @return Vehicle in front of the specified vehicle or null if no such vehicle exisits 
 	 */
 	public MobileNode getFrontVehicle(MobileNode currentVehicle) {
-		
-		int index = vehicles.indexOf(currentVehicle);
-		if (index>-1 && index<vehicles.size()-1) return vehicles.get(index+1);
+		if (currentVehicle.occupiedRoad!=this) return null;
+		return currentVehicle.leader;
+	}
+	
+	/**
+	 * Gets the rearmost vehicle at or in front of the given position on this road
+	 * @param position Position on this road
+	 * @return Vehicle with the smallest position not smaller than the given position or null if no such vehicle exists
+	 */
+	public MobileNode getVehicleAhead(double position) {
+		int index = search(position);
+		if (index<orderSize) return order[index];
+		return null;
+	}
+	
+	/**
+	 * Gets the foremost vehicle behind the given position on this road
+	 * @param position Position on this road
+	 * @return Vehicle with the largest position smaller than the given position or null if no such vehicle exists
+	 */
+	public MobileNode getVehicleBehind(double position) {
+		int index = search(position);
+		if (index>0) return order[index-1];
 		return null;
 	}
 	
+	/**
+	 * Returns the index of the first vehicle at or in front of the given position in the order of the vehicles
+	 */
+	int search(double position) {
+		if (!orderValid) {
+			if (order.length<vehicleCount) order = new MobileNode[Math.max(2*order.length, vehicleCount)];
+			int size = 0;
+			for (MobileNode vehicle=rearmost; vehicle!=null; vehicle=vehicle.leader) order[size++] = vehicle;
+			for (int i=size; i<orderSize; i++) order[i] = null;
+			orderSize = size;
+			orderValid = true;
+		}
+		
+		// binary search for the first vehicle at or in front of the position
+		int low = 0, high = orderSize;
+		while (low<high) {
+			int mid = (low+high)>>>1;
+			if (order[mid].position<position) low = mid+1;
+			else high = mid;
+		}
+		return low;
+	}
+	
+	/**
+	 * Returns the number of vehicles on this road
+	 * @return Number of vehicles
+	 */
+	public int getVehicleCount() {
+		return vehicleCount;
+	}
+	
 	/**
 	 * Lists vehicles on this road
 	 */
 	public void listCars() {
 		
-		Iterator<MobileNode> it = vehicles.iterator();
 		System.out.println("Cars on street (length=" + length + "): " + getEndNode().id + "->" + getStartNode().id);
 
-		while (it.hasNext()) {
-			MobileNode node = it.next();
+		MobileNode node = rearmost;
+		while (node!=null) {
 			System.out.println("\tNode " + node.id + " position=" + node.position + " speed=" + node.speed);
+			node = node.leader;
 		}
 	}
 
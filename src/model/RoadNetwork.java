@@ -176,4 +176,66 @@ public class RoadNetwork  {
 		  return null;
 	}
 	
+	/**
+	 * Returns an upper bound of the weights of the shortest paths between the given intersections. A shortest
+	 * path is not longer than the path through the hub, so the bound is the maximum weight of the shortest paths
+	 * from the intersections to the hub plus the maximum weight of the shortest paths from the hub to the intersections.
+	 * @param intersections Start and end intersections of the paths
+	 * @param hub Intersection through which the paths are bounded
+	 * @return Upper bound or Double.POSITIVE_INFINITY if the hub is not reachable from all intersections or vice versa
+	 */
+	public double getMaxPathWeight(Collection<RoadNode> intersections, RoadNode hub) {
+		double bound = 0;
+		for (int reverse=0; reverse<2; reverse++) {
+			computeCosts(hub, reverse==1);
+			double max = 0;
+			Iterator<RoadNode> it = intersections.iterator();
+			while (it.hasNext()) max = Math.max(max, it.next().dijkstraCost);
+			bound+=max;
+		}
+		return bound;
+	}
+	
+	/**
+	 * Dijkstra's shortest path algorithm without destination.
+	 * Sets the costs (dijkstraCost) of the shortest paths from the source to all intersections, or from all
+	 * intersections to the source if the roads are traversed in reverse direction.
+	 * @param source Start (or end) intersection of the paths
+	 * @param reverse True to traverse the roads in reverse direction
+	 */
+	void computeCosts(RoadNode source, boolean reverse) {
+		
+		queue.clear();
+		
+		Iterator<RoadNode> it = nodes.iterator();
+		while (it.hasNext()) {
+			RoadNode node = it.next();
+			if (node==source) node.dijkstraCost = 0;
+			else node.dijkstraCost = Double.POSITIVE_INFINITY;
+			node.dijkstraVisited = false;
+			queue.add(node);
+		}
+		
+		while (true) {
+			
+			RoadNode current = queue.poll();
+			if (current==null || current.dijkstraCost == Double.POSITIVE_INFINITY) break;
+			current.dijkstraVisited = true;
+			
+			List<RoadEdge> roads = reverse ? current.getInEdges() : current.getOutEdges();
+			for (Iterator<RoadEdge> itr = roads.iterator(); itr.hasNext();) {
+				
+				RoadEdge road = itr.next();
+				RoadNode relatedNode = reverse ? road.getStartNode() : road.getEndNode();
+				
+				if (!relatedNode.dijkstraVisited && relatedNode.dijkstraCost > (current.dijkstraCost + road.weight)) {
+					relatedNode.dijkstraCost = current.dijkstraCost + road.weight;
+					// update cost in the priority queue
+					queue.remove(relatedNode);
+					queue.add(relatedNode);
+				}
+			}
+		}
+	}
+	
 }
@@ -62,12 +62,14 @@ public class RoadNode extends Position {
 	public int greenLight = 0;
 	/** defines the index of the incoming road (opposite direction) which has currently a green traffic light */
 	public int greenLightOpposite = 0;
-	/** counter variable for traffic light scheduler */
-	int counter = 0;
 	/** duration of the current traffic light time slice */
 	int currentSlice = 0;
 	/** time slices (duration of green phase) for all traffic lights */
 	public int slices[] = null;
+	/** controller updating the traffic lights of this intersection (null if not controlled) */
+	TrafficLightController controller = null;
+	/** indicates that the intersection is queued for re-evaluation by the controller */
+	boolean queued = false;
 	
 	
 	
@@ -164,93 +166,91 @@ public class RoadNode extends Position {
 			RoadEdge greenRoad = getInEdges().get(greenLight);
 			greenRoad.setTrafficLight(false);
 			currentSlice = slices[greenLight];
-			counter = 0;
 		}
 		
 			
 	}
 	
 	/**
-	 * Updates the traffic light for the next simulation step.
-	 * This method toggles traffic lights if necessary.
+	 * Ends the current phase of the traffic light and gives green light to the next incoming road in a
+	 * round robin way.
 	 */
-	public void next() {
-
-		// check if this intersection is controlled by traffic lights
-		if (trafficLight) {
-			
-			if (counter<currentSlice) {
-				// increase counter
-				counter++;
-			} else {
-				
-				// set the traffic light of the current active street to red
-				getInEdges().get(greenLight).setTrafficLight(true);
-				
-				// get next traffic light in a round robin way
-				greenLight++;
-				if (greenLight==getInEdges().size()) greenLight = 0;
-				
-				// set the duration of the green phase for the current traffic light
-				currentSlice = (int)Math.round(slices[greenLight]);
-				// reset counter
-				counter = 0;
-				// set traffic light to green
-				getInEdges().get(greenLight).setTrafficLight(false);	
-				
-				
-				// traffic light in opposite direction (only for more than 4 roads)
+	public void switchPhase() {
+		
+		// set the traffic light of the current active street to red
+		getInEdges().get(greenLight).setTrafficLight(true);
+		
+		// get next traffic light in a round robin way
+		greenLight++;
+		if (greenLight==getInEdges().size()) greenLight = 0;
+		
+		// set the duration of the green phase for the current traffic light
+		currentSlice = (int)Math.round(slices[greenLight]);
+		// set traffic light to green
+		getInEdges().get(greenLight).setTrafficLight(false);	
+		
+		
+		// traffic light in opposite direction (only for more than 4 roads)
 		/*
-				// set the traffic light of the current active street to red
-				getInEdges().get(greenLightOpposite).setTrafficLight(true);
-				
-				// get next traffic light in a round robin way
-				greenLightOpposite++;
-				if (greenLightOpposite==getInEdges().size()) greenLightOpposite = 0;
-			
-				// set traffic light to green
-				getInEdges().get(greenLightOpposite).setTrafficLight(false);	
-				
-				System.out.println("Green lights: " + greenLight + " " + greenLightOpposite);
-				
+		// set the traffic light of the current active street to red
+		getInEdges().get(greenLightOpposite).setTrafficLight(true);
+		
+		// get next traffic light in a round robin way
+		greenLightOpposite++;
+		if (greenLightOpposite==getInEdges().size()) greenLightOpposite = 0;
+	
+		// set traffic light to green
+		getInEdges().get(greenLightOpposite).setTrafficLight(false);	
+		
+		System.out.println("Green lights: " + greenLight + " " + greenLightOpposite);
+		
 		*/
-			}
-			
-		} else {
-			// first come, first served
-			
-			double minDistance = Double.MAX_VALUE;
-			double vehicleDistance = 0;
-			int roadIndex = -1;
-			
-			int index = 0;
-			Iterator<RoadEdge> it = getInEdges().iterator();
-			while (it.hasNext()) {
-			
-				RoadEdge road = it.next();
-				MobileNode vehicle = road.getForemostVehicle();
-				if (vehicle!=null)  {
-					vehicleDistance = road.length - vehicle.position;
-					if (vehicleDistance<minDistance) {
-						minDistance = vehicleDistance;
-						roadIndex = index; 
-					}
+	}
+	
+	/**
+	 * Gives the right of way (green light) to the incoming road whose foremost vehicle is closest to this
+	 * intersection (first come, first served). All other incoming roads get a red light.
+	 * @return True if vehicles on more than one incoming road compete for the right of way
+	 */
+	public boolean assignRightOfWay() {
+		
+		double minDistance = Double.MAX_VALUE;
+		double vehicleDistance = 0;
+		int roadIndex = -1;
+		int occupiedRoads = 0;
+		
+		int index = 0;
+		Iterator<RoadEdge> it = getInEdges().iterator();
+		while (it.hasNext()) {
+		
+			RoadEdge road = it.next();
+			MobileNode vehicle = road.getForemostVehicle();
+			if (vehicle!=null)  {
+				occupiedRoads++;
+				vehicleDistance = road.length - vehicle.position;
+				if (vehicleDistance<minDistance) {
+					minDistance = vehicleDistance;
+					roadIndex = index; 
 				}
-				index++;
-				
-				// switch traffic light to red
-				road.setTrafficLight(true);
-				
 			}
+			index++;
 			
-			// switch traffic light to green
-			if (roadIndex!=-1) getInEdges().get(roadIndex).setTrafficLight(false);
+			// switch traffic light to red
+			road.setTrafficLight(true);
 			
 		}
 		
+		// switch traffic light to green
+		if (roadIndex!=-1) getInEdges().get(roadIndex).setTrafficLight(false);
 		
-		
-		
+		return occupiedRoads>1;
+	}
+	
+	/**
+	 * Notifies the intersection that the foremost vehicle on one of its incoming roads has changed
+	 */
+	void foremostVehicleChanged() {
+		if (controller!=null) controller.update(this);
 	}
 	
 
@@ -0,0 +1,131 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+
+package model;
+
+import java.util.*;
+
+import simulator.TimerWheel;
+
+
+/**
+ * TrafficLightController updates the traffic lights of all intersections of a road network in an event-driven way.
+ * The phase changes of intersections controlled by traffic lights are scheduled on a timer wheel with one tick per
+ * simulation step, so that an intersection is only touched when its current phase ends. Intersections without
+ * traffic lights (first come, first served) are only re-evaluated when the foremost vehicle of one of their incoming
+ * roads has changed: the vehicle which has got the right of way keeps it until it has cleared the intersection and
+ * left its road, the competing vehicles wait for this change.
+ */
+public class TrafficLightController {
+
+	/** number of buckets of the timer wheel */
+	static final int WHEEL_SIZE = 256;
+
+	/** duration of a simulation step */
+	double step = 1.0;
+	/** timer wheel scheduling the phase changes */
+	TimerWheel<RoadNode> phases = new TimerWheel<RoadNode>(WHEEL_SIZE);
+	/** intersections whose traffic light has expired in the current step */
+	ArrayList<RoadNode> expired = new ArrayList<RoadNode>();
+	/** first come, first served intersections to be re-evaluated in the next step */
+	ArrayList<RoadNode> pending = new ArrayList<RoadNode>();
+	/** first come, first served intersections evaluated in the current step */
+	ArrayList<RoadNode> current = new ArrayList<RoadNode>();
+
+
+	/**
+	 * Creates a traffic light controller
+	 * @param step Duration of a simulation step in seconds
+	 */
+	public TrafficLightController(double step) {
+		this.step = step;
+	}
+
+	/**
+	 * Initializes the intersection and registers it with this controller
+	 * @param intersection Intersection
+	 */
+	public void add(RoadNode intersection) {
+		intersection.init();
+		intersection.controller = this;
+		if (intersection.trafficLight) {
+			phases.schedule(intersection, getPhaseTicks(intersection.currentSlice));
+		} else {
+			update(intersection);
+		}
+	}
+
+	/**
+	 * Returns the number of simulation steps a traffic light phase lasts. The phase is switched in the
+	 * step after the duration of the time slice has elapsed.
+	 * @param slice Duration of the time slice in seconds
+	 * @return Number of steps
+	 */
+	long getPhaseTicks(int slice) {
+		return (long)Math.ceil(slice/step - 1e-9) + 1;
+	}
+
+	/**
+	 * Requests the re-evaluation of a first come, first served intersection in the next step
+	 * @param intersection Intersection
+	 */
+	void update(RoadNode intersection) {
+		if (intersection.trafficLight || intersection.queued) return;
+		intersection.queued = true;
+		pending.add(intersection);
+	}
+
+	/**
+	 * Updates the traffic lights for the next simulation step
+	 */
+	public void next() {
+
+		// phase changes of traffic lights
+		phases.advance(expired);
+		for (int i=0; i<expired.size(); i++) {
+			RoadNode intersection = expired.get(i);
+			intersection.switchPhase();
+			phases.schedule(intersection, getPhaseTicks(intersection.currentSlice));
+		}
+		expired.clear();
+
+		// first come, first served intersections
+		ArrayList<RoadNode> temp = current;
+		current = pending;
+		pending = temp;
+		for (int i=0; i<current.size(); i++) {
+			RoadNode intersection = current.get(i);
+			intersection.queued = false;
+			// the next check is requested when the vehicle with the right of way leaves its road
+			intersection.assignRightOfWay();
+		}
+		current.clear();
+	}
+
+}
@@ -0,0 +1,299 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+package network;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.util.*;
+
+import mobility.MobileNode;
+import simulator.Module;
+import simulator.Simulator;
+
+
+/**
+ * ComponentTracker maintains the connected components of the neighborhood graph. New links merge two
+ * components in a union-find structure (union by size, path halving). A broken link may split its component,
+ * which cannot be expressed by union-find, so the component is marked and all marked components are
+ * recomputed once at the end of the step from the neighbor sets of their nodes. The nodes of each component
+ * are kept in a circular list, so the recomputation only touches the affected components.
+ * The number of components and the size of the largest component are written to components.txt in every step.
+ */
+public class ComponentTracker extends Module implements LinkListener {
+
+	Simulator curSimulation;
+	/** buffered output writer */
+	BufferedWriter writer = null;
+
+	/** nodes indexed by their identifier */
+	MobileNode[] nodes = new MobileNode[0];
+	/** parent in the union-find forest (indexed by node identifier, the root identifies the component) */
+	int[] parent = new int[0];
+	/** size of the component (valid for roots) */
+	int[] size = new int[0];
+	/** next node of the same component (circular list) */
+	int[] next = new int[0];
+	/** indicates that the component of the root has lost a link in the current step */
+	boolean[] dirty = new boolean[0];
+	/** indicates that the node participates in the simulation */
+	boolean[] present = new boolean[0];
+
+	/** roots of the components which have lost a link in the current step */
+	int[] dirtyRoots = new int[16];
+	int dirtyCount = 0;
+	/** nodes of a recomputed component */
+	int[] members = new int[16];
+
+	/** number of components of the participating nodes */
+	int components = 0;
+	/** number of components of each size */
+	int[] sizeCount = new int[2];
+	/** size of the largest component */
+	int giantSize = 0;
+
+
+	/**
+	 * Creates a component tracker
+	 * @param simulator Simulator
+	 */
+	public ComponentTracker(Simulator simulator) {
+		this.curSimulation = simulator;
+		name = "Component tracker";
+	}
+
+	public void init() {
+		try {
+			writer = new BufferedWriter(new FileWriter(new File(curSimulation.outputDirectory + "/components.txt")));
+		} catch (Exception e) {
+			System.err.println(e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Returns the component of a node
+	 * @param node Node
+	 * @return Identifier of the component (identifier of one of its nodes, valid until the next step)
+	 */
+	public int getComponent(MobileNode node) {
+		return find(node.id);
+	}
+
+	/**
+	 * Returns the size of the component of a node
+	 * @param node Node
+	 * @return Number of nodes
+	 */
+	public int getComponentSize(MobileNode node) {
+		return size[find(node.id)];
+	}
+
+	/**
+	 * Returns the number of components
+	 * @return Number of components
+	 */
+	public int getComponentCount() {
+		return components;
+	}
+
+	/**
+	 * Returns the size of the largest component
+	 * @return Number of nodes
+	 */
+	public int getGiantComponentSize() {
+		return giantSize;
+	}
+
+	/**
+	 * Returns the root of the component of a node
+	 */
+	int find(int id) {
+		while (parent[id]!=id) {
+			parent[id] = parent[parent[id]];
+			id = parent[id];
+		}
+		return id;
+	}
+
+	/**
+	 * Merges the components of two nodes
+	 */
+	void union(int id1, int id2) {
+		int root1 = find(id1);
+		int root2 = find(id2);
+		if (root1==root2) return;
+		if (size[root1]<size[root2]) {
+			int temp = root1;
+			root1 = root2;
+			root2 = temp;
+		}
+		removeSize(size[root1]);
+		removeSize(size[root2]);
+		parent[root2] = root1;
+		size[root1]+=size[root2];
+		addSize(size[root1]);
+		components--;
+
+		// concatenate the circular lists
+		int temp = next[root1];
+		next[root1] = next[root2];
+		next[root2] = temp;
+
+		if (dirty[root2] && !dirty[root1]) markDirty(root1);
+	}
+
+	void addSize(int componentSize) {
+		if (componentSize>=sizeCount.length) sizeCount = Arrays.copyOf(sizeCount, Math.max(2*sizeCount.length, componentSize+1));
+		sizeCount[componentSize]++;
+		if (componentSize>giantSize) giantSize = componentSize;
+	}
+
+	void removeSize(int componentSize) {
+		sizeCount[componentSize]--;
+	}
+
+	void markDirty(int root) {
+		dirty[root] = true;
+		if (dirtyCount==dirtyRoots.length) dirtyRoots = Arrays.copyOf(dirtyRoots, 2*dirtyCount);
+		dirtyRoots[dirtyCount++] = root;
+	}
+
+	/**
+	 * Makes a node a component of its own
+	 */
+	void reset(int id) {
+		parent[id] = id;
+		size[id] = 1;
+		next[id] = id;
+		dirty[id] = false;
+	}
+
+	public void addNode(double time, MobileNode node) {
+		int id = node.id;
+		if (id>=parent.length) {
+			int capacity = Math.max(2*parent.length, id+1);
+			nodes = Arrays.copyOf(nodes, capacity);
+			parent = Arrays.copyOf(parent, capacity);
+			size = Arrays.copyOf(size, capacity);
+			next = Arrays.copyOf(next, capacity);
+			dirty = Arrays.copyOf(dirty, capacity);
+			present = Arrays.copyOf(present, capacity);
+		}
+		if (present[id]) return;
+		// a node rejoining in the same step is still part of its previous component, which is recomputed
+		boolean linked = nodes[id]!=null && (parent[id]!=id || next[id]!=id);
+		nodes[id] = node;
+		present[id] = true;
+		if (linked) return;
+		reset(id);
+		components++;
+		addSize(1);
+	}
+
+	/**
+	 * Removes a node leaving the simulation, its component is recomputed at the end of the step
+	 */
+	public void removeNode(double time, MobileNode node) {
+		int id = node.id;
+		if (id>=present.length || !present[id]) return;
+		present[id] = false;
+		int root = find(id);
+		if (!dirty[root]) markDirty(root);
+	}
+
+	public void linkUp(double time, MobileNode nodeA, MobileNode nodeB) {
+		union(nodeA.id, nodeB.id);
+	}
+
+	public void linkDown(double time, MobileNode nodeA, MobileNode nodeB, double startTime, boolean censored) {
+		int root = find(nodeA.id);
+		if (!dirty[root]) markDirty(root);
+	}
+
+	/**
+	 * Recomputes the components which have lost a link or a node in this step
+	 */
+	public void next() {
+		for (int i=0; i<dirtyCount; i++) {
+			int root = dirtyRoots[i];
+			// roots merged into another component later in the step are recomputed with that component
+			if (parent[root]!=root || !dirty[root]) continue;
+			recompute(root);
+		}
+		dirtyCount = 0;
+		while (giantSize>0 && sizeCount[giantSize]==0) giantSize--;
+
+		try {
+			writer.write(curSimulation.time + " " + components + " " + giantSize + "\n");
+		} catch (Exception e) {
+			System.err.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * Splits a component into the components of its remaining links
+	 * @param root Root of the component
+	 */
+	void recompute(int root) {
+		removeSize(size[root]);
+		components--;
+
+		// collect the nodes of the component and make each a component of its own
+		int count = 0;
+		int id = root;
+		do {
+			if (count==members.length) members = Arrays.copyOf(members, 2*count);
+			members[count++] = id;
+			id = next[id];
+		} while (id!=root);
+		for (int i=0; i<count; i++) {
+			reset(members[i]);
+			if (present[members[i]]) {
+				components++;
+				addSize(1);
+			}
+		}
+
+		// merge the nodes along the current links
+		for (int i=0; i<count; i++) {
+			if (!present[members[i]]) continue;
+			Iterator<MobileNode> it = nodes[members[i]].currentNeighbors.iterator();
+			while (it.hasNext()) union(members[i], it.next().id);
+		}
+	}
+
+	public void finish() {
+		try {
+			writer.close();
+		} catch (Exception e) {
+			System.err.println(e.getMessage());
+		}
+	}
+
+}
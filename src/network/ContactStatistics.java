@@ -0,0 +1,172 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+package network;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+
+import mobility.MobileNode;
+import model.LongDoubleMap;
+import probability.LogHistogram;
+import simulator.Module;
+import simulator.Simulator;
+
+
+/**
+ * ContactStatistics aggregates the link events of the LinkEventGenerator into the distributions of the
+ * contact durations and the inter-contact times (time between the end of a contact of two nodes and the start
+ * of their next contact). Finished contacts are folded into logarithmic histograms of fixed size, only the end
+ * of the last contact of each pair of nodes is kept in a primitive map. Censored contacts, i.e. contacts which
+ * have been established before the start of the observation or are still established at the end of the
+ * simulation, are counted separately and not included in the distribution of the durations. At the end of the
+ * simulation, the summary and the complementary cumulative distribution functions are written to
+ * contact_statistics.txt.
+ */
+public class ContactStatistics extends Module implements LinkListener {
+
+	/** relative accuracy of the quantiles */
+	static final double ACCURACY = 0.01;
+	/** range of the durations distinguished by the histograms in seconds */
+	static final double MIN_DURATION = 1e-3;
+	static final double MAX_DURATION = 1e7;
+
+	Simulator curSimulation;
+	/** distribution of the contact durations */
+	LogHistogram contactDurations = new LogHistogram(ACCURACY, MIN_DURATION, MAX_DURATION);
+	/** distribution of the inter-contact times */
+	LogHistogram interContactTimes = new LogHistogram(ACCURACY, MIN_DURATION, MAX_DURATION);
+	/** end of the last contact indexed by the key of the pair of nodes */
+	LongDoubleMap lastContactEnd = new LongDoubleMap();
+	/** number of contacts in progress */
+	int openContacts = 0;
+	/** number of contacts whose duration has not been fully observed */
+	long censoredContacts = 0;
+
+
+	/**
+	 * Creates the contact statistics
+	 * @param simulator Simulator
+	 */
+	public ContactStatistics(Simulator simulator) {
+		this.curSimulation = simulator;
+		name = "Contact statistics";
+	}
+
+	public void linkUp(double time, MobileNode nodeA, MobileNode nodeB) {
+		openContacts++;
+		double end = lastContactEnd.get(Link.getKey(nodeA.id, nodeB.id), Double.NaN);
+		if (!Double.isNaN(end)) interContactTimes.add(time - end);
+	}
+
+	public void linkDown(double time, MobileNode nodeA, MobileNode nodeB, double startTime, boolean censored) {
+		openContacts--;
+		if (censored) censoredContacts++;
+		else contactDurations.add(time - startTime);
+		lastContactEnd.put(Link.getKey(nodeA.id, nodeB.id), time);
+	}
+
+	/**
+	 * Returns the distribution of the contact durations
+	 * @return Histogram of the contact durations
+	 */
+	public LogHistogram getContactDurations() {
+		return contactDurations;
+	}
+
+	/**
+	 * Returns the distribution of the inter-contact times
+	 * @return Histogram of the inter-contact times
+	 */
+	public LogHistogram getInterContactTimes() {
+		return interContactTimes;
+	}
+
+	/**
+	 * Returns the number of contacts in progress
+	 * @return Number of contacts
+	 */
+	public int getOpenContacts() {
+		return openContacts;
+	}
+
+	/**
+	 * Returns the number of censored contacts (not included in the contact durations)
+	 * @return Number of contacts
+	 */
+	public long getCensoredContacts() {
+		return censoredContacts;
+	}
+
+	public void init() {
+		// nothing to do
+	}
+
+	public void next() {
+		// contacts are received from the link event generator
+	}
+
+	public void addNode(double time, MobileNode node) {
+		// nothing to do
+	}
+
+	public void removeNode(double time, MobileNode node) {
+		// nothing to do
+	}
+
+	/**
+	 * Returns a summary of a distribution
+	 */
+	String summarize(String title, LogHistogram histogram) {
+		return title + ": count=" + histogram.getCount() + " mean=" + histogram.getMean() + " min=" + histogram.getMin()
+				+ " median=" + histogram.getQuantile(0.5) + " p90=" + histogram.getQuantile(0.9)
+				+ " p99=" + histogram.getQuantile(0.99) + " max=" + histogram.getMax();
+	}
+
+	public void finish() {
+		String durations = summarize("Contact durations", contactDurations) + " censored=" + censoredContacts;
+		String gaps = summarize("Inter-contact times", interContactTimes);
+		System.out.println(durations);
+		System.out.println(gaps);
+
+		try {
+			BufferedWriter writer = new BufferedWriter(new FileWriter(new File(curSimulation.outputDirectory + "/contact_statistics.txt")));
+			writer.write("# " + durations + "\n");
+			writer.write("# " + gaps + "\n");
+			writer.write("# contact duration CCDF (duration P[X>duration])\n");
+			contactDurations.writeCCDF(writer);
+			writer.write("\n# inter-contact time CCDF (time P[X>time])\n");
+			interContactTimes.writeCCDF(writer);
+			writer.close();
+		} catch (Exception e) {
+			System.err.println(e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,247 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+package network;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import mobility.MobileNode;
+import model.Graph;
+import simulator.Module;
+import simulator.Simulator;
+
+
+/**
+ * HopDistanceModule computes the distribution of the hop distances between all pairs of nodes in the
+ * neighborhood graph every given number of steps, using the primitive adjacency of the graph. The
+ * breadth-first searches of 64 source nodes are performed at once: each node keeps a bit per source in a long
+ * word, and a level of all 64 searches is expanded by OR-ing the frontier words of the neighbors
+ * (word-parallel BFS). The groups of sources are distributed over the available processors. Per sample, the
+ * number of reachable pairs, the mean and maximum hop distance and the number of pairs at each distance are
+ * written to hop_distances.txt.
+ */
+public class HopDistanceModule extends Module {
+
+	Simulator curSimulation;
+	/** number of steps between two samples */
+	int interval = 1;
+	/** number of steps performed */
+	long step = 0;
+	/** buffered output writer */
+	BufferedWriter writer = null;
+	/** threads performing the searches */
+	ExecutorService executor = null;
+	int threads = 1;
+
+	/** adjacency of the sampled graph (compressed rows of the neighborhood graph, owned by the graph) */
+	int nodeCount = 0;
+	int[] offsets = null;
+	int[] neighbors = null;
+
+	/** number of ordered pairs of nodes at each hop distance in the last sample (index=distance) */
+	long[] histogram = new long[0];
+	/** number of ordered pairs of distinct nodes connected by a path in the last sample */
+	long reachablePairs = 0;
+
+
+	/**
+	 * Creates a hop distance module
+	 * @param simulator Simulator
+	 * @param interval Number of steps between two samples
+	 */
+	public HopDistanceModule(Simulator simulator, int interval) {
+		this.curSimulation = simulator;
+		this.interval = Math.max(1, interval);
+		name = "Hop distance module";
+	}
+
+	public void init() {
+		threads = Runtime.getRuntime().availableProcessors();
+		executor = Executors.newFixedThreadPool(threads);
+		try {
+			writer = new BufferedWriter(new FileWriter(new File(curSimulation.outputDirectory + "/hop_distances.txt")));
+		} catch (Exception e) {
+			System.err.println(e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Returns the number of ordered pairs of nodes at each hop distance in the last sample
+	 * @return Histogram (index=hop distance)
+	 */
+	public long[] getHistogram() {
+		return histogram;
+	}
+
+	/**
+	 * Returns the number of ordered pairs of distinct nodes connected by a path in the last sample
+	 * @return Number of pairs
+	 */
+	public long getReachablePairs() {
+		return reachablePairs;
+	}
+
+	/**
+	 * Returns the mean hop distance of the connected pairs in the last sample
+	 * @return Mean hop distance
+	 */
+	public double getMeanHopDistance() {
+		long sum = 0;
+		for (int i=1; i<histogram.length; i++) sum+=i*histogram[i];
+		return (double)sum/reachablePairs;
+	}
+
+	public void next() {
+		if (step++%interval!=0) return;
+		Graph graph = curSimulation.neighborhoodGraph;
+		nodeCount = graph.getSize();
+		offsets = graph.getOffsets();
+		neighbors = graph.getAdjacency();
+		sample();
+
+		int maxHops = histogram.length-1;
+		StringBuilder line = new StringBuilder();
+		line.append(curSimulation.time).append(' ').append(nodeCount).append(' ').append(reachablePairs).append(' ')
+			.append(reachablePairs>0 ? getMeanHopDistance() : 0).append(' ').append(maxHops);
+		for (int i=1; i<=maxHops; i++) line.append(' ').append(histogram[i]);
+		line.append('\n');
+		try {
+			writer.write(line.toString());
+		} catch (Exception e) {
+			System.err.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * Performs the breadth-first searches from all nodes and collects the hop distances
+	 */
+	void sample() {
+		int groups = (nodeCount + 63)/64;
+		ArrayList<Callable<long[]>> tasks = new ArrayList<Callable<long[]>>();
+		for (int t=0; t<Math.min(threads, groups); t++) {
+			final int first = t;
+			tasks.add(new Callable<long[]>() {
+				public long[] call() {
+					return search(first, threads);
+				}
+			});
+		}
+
+		long[] result = new long[1];
+		try {
+			List<Future<long[]>> futures = executor.invokeAll(tasks);
+			for (int i=0; i<futures.size(); i++) {
+				long[] partial = futures.get(i).get();
+				if (partial.length>result.length) result = Arrays.copyOf(result, partial.length);
+				for (int j=0; j<partial.length; j++) result[j]+=partial[j];
+			}
+		} catch (Exception e) {
+			System.err.println("Error computing hop distances: " + e.getMessage());
+		}
+
+		int length = result.length;
+		while (length>1 && result[length-1]==0) length--;
+		histogram = Arrays.copyOf(result, length);
+		reachablePairs = 0;
+		for (int i=1; i<histogram.length; i++) reachablePairs+=histogram[i];
+	}
+
+	/**
+	 * Performs the searches of every stride-th group of 64 sources
+	 * @param first First group
+	 * @param stride Distance between two groups
+	 * @return Number of pairs at each hop distance
+	 */
+	long[] search(int first, int stride) {
+		long[] counts = new long[16];
+		long[] visited = new long[nodeCount];
+		long[] frontier = new long[nodeCount];
+		long[] reached = new long[nodeCount];
+
+		for (int group=first; group*64<nodeCount; group+=stride) {
+			Arrays.fill(visited, 0);
+			Arrays.fill(frontier, 0);
+			int sources = Math.min(64, nodeCount - group*64);
+			long all = (sources==64) ? -1L : (1L<<sources)-1;
+			for (int i=0; i<sources; i++) {
+				visited[group*64 + i] = 1L<<i;
+				frontier[group*64 + i] = 1L<<i;
+			}
+
+			// expand all searches by one level (pull from the neighbors)
+			for (int level=1; ; level++) {
+				long found = 0;
+				for (int v=0; v<nodeCount; v++) {
+					// node already reached by all searches
+					if (visited[v]==all) {
+						reached[v] = 0;
+						continue;
+					}
+					long bits = 0;
+					for (int j=offsets[v]; j<offsets[v+1]; j++) bits|=frontier[neighbors[j]];
+					bits&=~visited[v];
+					reached[v] = bits;
+					if (bits!=0) found+=Long.bitCount(bits);
+				}
+				if (found==0) break;
+				if (level>=counts.length) counts = Arrays.copyOf(counts, 2*counts.length);
+				counts[level]+=found;
+				for (int v=0; v<nodeCount; v++) visited[v]|=reached[v];
+				long[] temp = frontier;
+				frontier = reached;
+				reached = temp;
+			}
+		}
+		return counts;
+	}
+
+	public void addNode(double time, MobileNode node) {
+		// the adjacency is read from the graph at each sample
+	}
+
+	public void removeNode(double time, MobileNode node) {
+		// the adjacency is read from the graph at each sample
+	}
+
+	public void finish() {
+		executor.shutdown();
+		try {
+			writer.close();
+		} catch (Exception e) {
+			System.err.println(e.getMessage());
+		}
+	}
+
+}
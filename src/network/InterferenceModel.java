@@ -0,0 +1,383 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+package network;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import mobility.MobileNode;
+
+
+/**
+ * InterferenceModel decides the links of the neighborhood graph by the signal to interference and noise ratio
+ * (SINR) instead of a fixed radio range. The received power follows a log-distance path-loss model
+ * (reference loss REFERENCE_LOSS at 1 m, path-loss exponent), all nodes transmit with the same power, and the
+ * interference at a receiver is the sum of the power received from all other nodes, scaled by the fraction of
+ * nodes transmitting at the same time. Two nodes are linked if the SINR is above the threshold in both
+ * directions.
+ * <p>
+ * The interference sums are computed in every step on a pyramid of uniform grids: the power of the nodes in
+ * the cells within the cutoff distance of a receiver is summed exactly, cells beyond the cutoff are summarized
+ * by their number of nodes and their centroid, using coarser cells the farther they are. Each receiver visits
+ * a constant number of cells per level, so the effort per step is O(n log n) instead of O(n^2). The receivers
+ * are distributed over the available processors.
+ */
+public class InterferenceModel {
+
+	/** path loss at the reference distance of 1 m in dB */
+	public static final double REFERENCE_LOSS = 40;
+	/** near zone of a receiver in cells of each level (a cell of level l is summarized at a distance of at least NEAR_CELLS cells of level l) */
+	static final int NEAR_CELLS = 2;
+
+	/** SINR threshold (linear) */
+	double threshold;
+	/** path-loss exponent */
+	double exponent;
+	/** received power at the reference distance in mW */
+	double referencePower;
+	/** noise power in mW */
+	double noise;
+	/** fraction of the nodes transmitting at the same time */
+	double activity;
+	/** distance up to which the interference is summed exactly */
+	double cutoff;
+	/** distance at which the SINR without interference drops below the threshold */
+	double maxDistance;
+
+	/** threads computing the interference sums */
+	ExecutorService executor = null;
+	int threads = 1;
+
+	/** positions of the nodes of the current step (in list order) */
+	int n = 0;
+	double[] x = new double[0];
+	double[] y = new double[0];
+	/** cell coordinates of the nodes (level 0) */
+	int[] cellX = new int[0];
+	int[] cellY = new int[0];
+	/** nodes sorted by their cell, cell c contains order[cellStart[c]]..order[cellStart[c+1]-1] */
+	int[] order = new int[0];
+	int[] cellStart = new int[1];
+	/** total received power of the nodes (in list order) */
+	double[] received = new double[0];
+	/** total received power indexed by node identifier */
+	double[] interference = new double[0];
+
+	/** origin and cell size of the level 0 grid */
+	double minX = 0;
+	double minY = 0;
+	double cellSize = 0;
+	/** number of levels of the grid pyramid */
+	int levels = 0;
+	/** width and height of the grid of each level */
+	int[] widths = new int[0];
+	int[] heights = new int[0];
+	/** number of nodes and sum of their coordinates in each cell of each level */
+	int[][] counts = new int[0][];
+	double[][] sumX = new double[0][];
+	double[][] sumY = new double[0][];
+
+
+	/**
+	 * Creates an interference model
+	 * @param threshold SINR threshold in dB
+	 * @param exponent Path-loss exponent
+	 * @param transmitPower Transmit power in dBm
+	 * @param noise Noise power in dBm
+	 * @param activity Fraction of the nodes transmitting at the same time
+	 * @param cutoff Distance up to which the interference is summed exactly (at least the maximum link distance)
+	 */
+	public InterferenceModel(double threshold, double exponent, double transmitPower, double noise, double activity, double cutoff) {
+		this.threshold = Math.pow(10, threshold/10);
+		this.exponent = exponent;
+		this.referencePower = Math.pow(10, (transmitPower - REFERENCE_LOSS)/10);
+		this.noise = Math.pow(10, noise/10);
+		this.activity = activity;
+		maxDistance = Math.max(1, Math.pow(referencePower/(this.threshold*this.noise), 1/exponent));
+		this.cutoff = Math.max(cutoff, maxDistance);
+	}
+
+	/**
+	 * Returns the maximum distance of a link (SINR above the threshold without interference)
+	 * @return Distance
+	 */
+	public double getMaxDistance() {
+		return maxDistance;
+	}
+
+	/**
+	 * Returns the power received from a node at the given squared distance
+	 * @param distanceSquared Squared distance
+	 * @return Power in mW
+	 */
+	double getPower(double distanceSquared) {
+		double d2 = Math.max(1, distanceSquared);
+		if (exponent==2) return referencePower/d2;
+		if (exponent==3) return referencePower/(d2*Math.sqrt(d2));
+		if (exponent==4) return referencePower/(d2*d2);
+		return referencePower*Math.pow(d2, -exponent/2);
+	}
+
+	/**
+	 * Computes the interference sums for the current node positions
+	 * @param nodes Participating nodes
+	 */
+	public void update(List<MobileNode> nodes) {
+		n = nodes.size();
+		if (n>x.length) {
+			int capacity = Math.max(16, 2*n);
+			x = new double[capacity];
+			y = new double[capacity];
+			cellX = new int[capacity];
+			cellY = new int[capacity];
+			order = new int[capacity];
+			received = new double[capacity];
+		}
+		int maxId = 0;
+		minX = Double.POSITIVE_INFINITY;
+		minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int i=0; i<n; i++) {
+			MobileNode node = nodes.get(i);
+			x[i] = node.x;
+			y[i] = node.y;
+			minX = Math.min(minX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxX = Math.max(maxX, x[i]);
+			maxY = Math.max(maxY, y[i]);
+			maxId = Math.max(maxId, node.id);
+		}
+		if (maxId>=interference.length) interference = new double[Math.max(2*interference.length, maxId+1)];
+		if (n==0) return;
+
+		buildGrid(maxX - minX, maxY - minY);
+		computeAll();
+		for (int i=0; i<n; i++) interference[nodes.get(i).id] = received[i];
+	}
+
+	/**
+	 * Sorts the nodes into the level 0 grid and aggregates the cells of the coarser levels
+	 * @param width Width of the area containing the nodes
+	 * @param height Height of the area containing the nodes
+	 */
+	void buildGrid(double width, double height) {
+		// the near zone covers the cutoff distance, the cells are enlarged if the area is sparsely populated
+		cellSize = cutoff/NEAR_CELLS;
+		int w = (int)(width/cellSize) + 1;
+		int h = (int)(height/cellSize) + 1;
+		while ((long)w*h>4L*n + 4096) {
+			cellSize*=2;
+			w = (int)(width/cellSize) + 1;
+			h = (int)(height/cellSize) + 1;
+		}
+
+		// levels up to the first level whose cells are all in the near zone of each other
+		levels = 1;
+		for (int lw=w, lh=h; Math.max(lw, lh)-1>NEAR_CELLS; lw=(lw+1)/2, lh=(lh+1)/2) levels++;
+		if (widths.length<levels) {
+			widths = new int[levels];
+			heights = new int[levels];
+			counts = Arrays.copyOf(counts, levels);
+			sumX = Arrays.copyOf(sumX, levels);
+			sumY = Arrays.copyOf(sumY, levels);
+		}
+		for (int l=0; l<levels; l++) {
+			widths[l] = (l==0) ? w : (widths[l-1]+1)/2;
+			heights[l] = (l==0) ? h : (heights[l-1]+1)/2;
+			int cells = widths[l]*heights[l];
+			if (counts[l]==null || counts[l].length<cells) {
+				counts[l] = new int[cells];
+				sumX[l] = new double[cells];
+				sumY[l] = new double[cells];
+			} else {
+				Arrays.fill(counts[l], 0, cells, 0);
+				Arrays.fill(sumX[l], 0, cells, 0);
+				Arrays.fill(sumY[l], 0, cells, 0);
+			}
+		}
+
+		// level 0 (counting sort by cell)
+		int cells = w*h;
+		if (cellStart.length<cells+1) cellStart = new int[Math.max(2*cellStart.length, cells+1)];
+		int[] count = counts[0];
+		for (int i=0; i<n; i++) {
+			cellX[i] = Math.min(w-1, (int)((x[i] - minX)/cellSize));
+			cellY[i] = Math.min(h-1, (int)((y[i] - minY)/cellSize));
+			int c = cellY[i]*w + cellX[i];
+			count[c]++;
+			sumX[0][c]+=x[i];
+			sumY[0][c]+=y[i];
+		}
+		cellStart[0] = 0;
+		for (int c=0; c<cells; c++) cellStart[c+1] = cellStart[c] + count[c];
+		for (int i=0; i<n; i++) order[cellStart[cellY[i]*w + cellX[i]]++] = i;
+		for (int c=cells; c>0; c--) cellStart[c] = cellStart[c-1];
+		cellStart[0] = 0;
+
+		// coarser levels
+		for (int l=1; l<levels; l++) {
+			int childWidth = widths[l-1];
+			for (int cy=0; cy<heights[l-1]; cy++) {
+				for (int cx=0; cx<childWidth; cx++) {
+					int child = cy*childWidth + cx;
+					if (counts[l-1][child]==0) continue;
+					int parent = (cy>>1)*widths[l] + (cx>>1);
+					counts[l][parent]+=counts[l-1][child];
+					sumX[l][parent]+=sumX[l-1][child];
+					sumY[l][parent]+=sumY[l-1][child];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the received power of all nodes, distributing the nodes over the threads
+	 */
+	void computeAll() {
+		if (executor==null) {
+			threads = Runtime.getRuntime().availableProcessors();
+			executor = Executors.newFixedThreadPool(threads);
+		}
+		ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		int chunk = (n + threads - 1)/threads;
+		for (int t=0; t<threads; t++) {
+			final int first = t*chunk;
+			final int last = Math.min(n, first + chunk);
+			if (first>=last) break;
+			tasks.add(new Callable<Object>() {
+				public Object call() {
+					for (int i=first; i<last; i++) received[i] = compute(i);
+					return null;
+				}
+			});
+		}
+		try {
+			List<Future<Object>> futures = executor.invokeAll(tasks);
+			for (int i=0; i<futures.size(); i++) futures.get(i).get();
+		} catch (Exception e) {
+			System.err.println("Error computing the interference: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Computes the power received by a node from all other nodes
+	 * @param i Node (list index)
+	 * @return Power in mW
+	 */
+	double compute(int i) {
+		double power = 0;
+		int cx = cellX[i];
+		int cy = cellY[i];
+
+		// far field: the cells of each level which are near the parent cell but not near the cell of the receiver
+		for (int l=levels-2; l>=0; l--) {
+			int rx = cx>>l;
+			int ry = cy>>l;
+			int px = cx>>(l+1);
+			int py = cy>>(l+1);
+			int w = widths[l];
+			int[] count = counts[l];
+			int x0 = Math.max(0, 2*(px-NEAR_CELLS));
+			int x1 = Math.min(w-1, 2*(px+NEAR_CELLS)+1);
+			int y0 = Math.max(0, 2*(py-NEAR_CELLS));
+			int y1 = Math.min(heights[l]-1, 2*(py+NEAR_CELLS)+1);
+			for (int gy=y0; gy<=y1; gy++) {
+				boolean nearRow = Math.abs(gy-ry)<=NEAR_CELLS;
+				for (int gx=x0; gx<=x1; gx++) {
+					if (nearRow && Math.abs(gx-rx)<=NEAR_CELLS) continue;
+					int c = gy*w + gx;
+					if (count[c]==0) continue;
+					double dx = sumX[l][c]/count[c] - x[i];
+					double dy = sumY[l][c]/count[c] - y[i];
+					power+=count[c]*getPower(dx*dx + dy*dy);
+				}
+			}
+		}
+
+		// near field: the nodes of the adjacent cells
+		int w = widths[0];
+		for (int gy=Math.max(0, cy-NEAR_CELLS); gy<=Math.min(heights[0]-1, cy+NEAR_CELLS); gy++) {
+			for (int gx=Math.max(0, cx-NEAR_CELLS); gx<=Math.min(w-1, cx+NEAR_CELLS); gx++) {
+				int c = gy*w + gx;
+				for (int k=cellStart[c]; k<cellStart[c+1]; k++) {
+					int j = order[k];
+					if (j==i) continue;
+					double dx = x[j] - x[i];
+					double dy = y[j] - y[i];
+					power+=getPower(dx*dx + dy*dy);
+				}
+			}
+		}
+		return power;
+	}
+
+	/**
+	 * Returns the total power received by a node from all other nodes in the last update
+	 * @param node Receiver
+	 * @return Power in mW
+	 */
+	public double getReceivedPower(MobileNode node) {
+		return interference[node.id];
+	}
+
+	/**
+	 * Returns the SINR of the signal of a transmitter at a receiver
+	 * @param receiver Receiver
+	 * @param transmitter Transmitter
+	 * @return SINR (linear)
+	 */
+	public double getSINR(MobileNode receiver, MobileNode transmitter) {
+		double dx = receiver.x - transmitter.x;
+		double dy = receiver.y - transmitter.y;
+		double signal = getPower(dx*dx + dy*dy);
+		return signal/(noise + activity*Math.max(0, interference[receiver.id] - signal));
+	}
+
+	/**
+	 * Returns whether two nodes can communicate in both directions
+	 * @param nodeA First node
+	 * @param nodeB Second node
+	 * @return True if the SINR is at least the threshold at both nodes
+	 */
+	public boolean isLinked(MobileNode nodeA, MobileNode nodeB) {
+		return getSINR(nodeA, nodeB)>=threshold && getSINR(nodeB, nodeA)>=threshold;
+	}
+
+	/**
+	 * Stops the threads
+	 */
+	public void shutdown() {
+		if (executor!=null) executor.shutdown();
+	}
+
+}
@@ -0,0 +1,112 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+package network;
+
+import mobility.MobileNode;
+import model.GraphEdge;
+
+/**
+ * Link is an edge of the neighborhood graph representing a radio link between two mobile nodes.
+ * The NeighborhoodModule reuses the links which have been broken (see set) and does not add them to the edge
+ * lists of the nodes; the neighbors of a node are given by MobileNode.currentNeighbors and the adjacency of
+ * the neighborhood graph.
+ */
+public class Link extends GraphEdge {
+
+	/** key identifying the pair of nodes (see getKey) */
+	public long key = 0;
+	/** time when the link was established */
+	public double startTime = 0;
+	/** simulation step in which the link was observed last */
+	long lastSeen = 0;
+	/** position of the link in the edge list of the neighborhood graph */
+	int index = -1;
+
+	/**
+	 * Creates a link between two nodes and adds it to the edge lists of both nodes
+	 * @param nodeA Node with the smaller identifier
+	 * @param nodeB Node with the larger identifier
+	 * @param startTime Time when the link was established
+	 */
+	public Link(MobileNode nodeA, MobileNode nodeB, double startTime) {
+		super(nodeA, nodeB);
+		this.key = getKey(nodeA.id, nodeB.id);
+		this.startTime = startTime;
+	}
+
+	/**
+	 * Creates an unused link
+	 */
+	Link() {
+		super();
+	}
+
+	/**
+	 * Reuses the link for a pair of nodes (the link is not added to the edge lists of the nodes)
+	 * @param nodeA Node with the smaller identifier
+	 * @param nodeB Node with the larger identifier
+	 * @param startTime Time when the link was established
+	 */
+	void set(MobileNode nodeA, MobileNode nodeB, double startTime) {
+		setNodes(nodeA, nodeB);
+		this.key = getKey(nodeA.id, nodeB.id);
+		this.startTime = startTime;
+		this.lastSeen = 0;
+		this.index = -1;
+	}
+
+	/**
+	 * Returns the first node of the link (smaller identifier)
+	 * @return Node
+	 */
+	public MobileNode getMobileNodeA() {
+		return (MobileNode)getNodeA();
+	}
+
+	/**
+	 * Returns the second node of the link (larger identifier)
+	 * @return Node
+	 */
+	public MobileNode getMobileNodeB() {
+		return (MobileNode)getNodeB();
+	}
+
+	/**
+	 * Returns the key of the link between two nodes, independent of the order of the nodes
+	 * @param idA Identifier of the first node
+	 * @param idB Identifier of the second node
+	 * @return Key
+	 */
+	public static long getKey(int idA, int idB) {
+		int min = Math.min(idA, idB);
+		int max = Math.max(idA, idB);
+		return ((long)min<<32) | (max & 0xffffffffL);
+	}
+
+}
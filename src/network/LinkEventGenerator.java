@@ -0,0 +1,631 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+package network;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.util.*;
+
+import event.*;
+import mobility.MobileNode;
+import model.LongMap;
+import simulator.Module;
+import simulator.Simulator;
+
+
+/**
+ * LinkEventGenerator computes the exact times at which two nodes come into range and go out of range from the
+ * events of the simulation. Between two events a node moves linearly, so the distance of two nodes crosses the
+ * radio range at the roots of a quadratic equation. The roots of a pair are solved whenever the movement of one
+ * of its nodes changes, the next crossing of each pair is kept in a priority queue and reported as soon as all
+ * events before it have been received (kinetic data structure).
+ * The candidate pairs are determined with a spatial hash in intervals in which two nodes moving at the speed
+ * bound can approach each other by at most the radio range (at most REBUILD_INTERVAL seconds): only pairs
+ * within the radio range plus this distance are examined. Nodes joining the simulation or jumping to a new position are added to the spatial hash of the
+ * last rebuild, a node moving faster than the speed bound causes an immediate rebuild.
+ * The link events are written to the file contacts.txt in the connectivity format of the ONE simulator
+ * (time CONN nodeA nodeB up|down) and passed to the registered link listeners.
+ */
+public class LinkEventGenerator extends Module implements EventSink {
+
+	/** maximum time between two rebuilds of the candidate pairs in seconds */
+	static final double REBUILD_INTERVAL = 10;
+	/** factor applied to the maximum speed when a faster node raises the speed bound */
+	static final double SPEED_MARGIN = 1.25;
+	/** maximum difference between the start position of an event and the previous movement of the node */
+	static final double EPSILON = 1e-6;
+
+	/** types of the scheduled pair updates */
+	static final int UP = 0;
+	static final int DOWN = 1;
+	static final int CHECK = 2;
+
+	/**
+	 * Linear movement of a node since its last event
+	 */
+	static class Track {
+		MobileNode node;
+		/** indicates that the node participates in the simulation */
+		boolean present = false;
+		/** start time and start position of the movement */
+		double time = 0;
+		double x = 0;
+		double y = 0;
+		/** velocity vector */
+		double vx = 0;
+		double vy = 0;
+		/** end time of the movement, the node stays at the end position afterwards */
+		double end = Double.POSITIVE_INFINITY;
+		/** candidate pairs of the node (may contain removed pairs) */
+		ArrayList<Pair> pairs = new ArrayList<Pair>();
+		/** last batch in which the movement has changed */
+		long changed = -1;
+		/** last batch in which the node has been added to the spatial hash */
+		long inserted = -1;
+
+		Track(MobileNode node) {
+			this.node = node;
+		}
+
+		double getX(double t) {
+			return x + vx*(Math.min(t, end) - time);
+		}
+
+		double getY(double t) {
+			return y + vy*(Math.min(t, end) - time);
+		}
+	}
+
+	/**
+	 * Candidate pair of nodes
+	 */
+	static class Pair {
+		/** node with the smaller identifier */
+		Track a;
+		Track b;
+		long key;
+		/** indicates that the nodes are in range */
+		boolean up = false;
+		/** time when the link was established */
+		double startTime = 0;
+		/** indicates that the link has been established at the start of the observation (start not observed) */
+		boolean startCensored = false;
+		/** incremented whenever the scheduled update of the pair becomes invalid */
+		long version = 0;
+		/** last batch in which the pair has been updated */
+		long updated = -1;
+		/** indicates that one of the nodes has left the simulation */
+		boolean removed = false;
+
+		Pair(Track a, Track b, long key) {
+			this.a = a;
+			this.b = b;
+			this.key = key;
+		}
+	}
+
+	/**
+	 * Scheduled update of a pair
+	 */
+	static class Update {
+		double time;
+		long sequence;
+		Pair pair;
+		long version;
+		int type;
+
+		Update(double time, long sequence, Pair pair, int type) {
+			this.time = time;
+			this.sequence = sequence;
+			this.pair = pair;
+			this.version = pair.version;
+			this.type = type;
+		}
+	}
+
+	Simulator curSimulation;
+	/** radio range */
+	double range = 0;
+	/** listeners receiving the link events */
+	ArrayList<LinkListener> listeners = new ArrayList<LinkListener>();
+	/** time of the first batch of events (links established at this time have been up before) */
+	double observationStart = Double.NEGATIVE_INFINITY;
+	/** buffered output writer */
+	BufferedWriter writer = null;
+
+	/** movements indexed by node identifier */
+	Track[] tracks = new Track[0];
+	/** all movements in order of their creation */
+	ArrayList<Track> trackList = new ArrayList<Track>();
+	/** candidate pairs indexed by their key */
+	LongMap<Pair> pairs = new LongMap<Pair>();
+	/** next crossing or re-examination of the pairs ordered by time */
+	PriorityQueue<Update> queue = new PriorityQueue<Update>(1024, new Comparator<Update>() {
+		public int compare(Update update1, Update update2) {
+			int result = Double.compare(update1.time, update2.time);
+			if (result!=0) return result;
+			return Long.compare(update1.sequence, update2.sequence);
+		}
+	});
+	/** number of scheduled updates */
+	long sequence = 0;
+
+	/** spatial hash of the last rebuild (null before the first rebuild) */
+	LongMap<ArrayList<Track>> grid = null;
+	/** size of a grid cell */
+	double cellSize = 0;
+	/** speed bound of the candidate pairs */
+	double speedBound = 0;
+	/** time of the next rebuild */
+	double nextRebuild = Double.POSITIVE_INFINITY;
+
+	/** events with the same start time received last (copied, the event objects are reused) */
+	int batchSize = 0;
+	double batchTime = 0;
+	Track[] batchTrack = new Track[16];
+	int[] batchType = new int[16];
+	double[][] batchValues = new double[16][5];
+	/** number of processed batches */
+	long batches = 0;
+	/** nodes whose movement has changed in the current batch */
+	ArrayList<Track> changedTracks = new ArrayList<Track>();
+	/** nodes added to the spatial hash in the current batch */
+	ArrayList<Track> insertedTracks = new ArrayList<Track>();
+
+	/** number of link events */
+	long linkEvents = 0;
+	/** number of pair updates */
+	long pairUpdates = 0;
+
+
+	/**
+	 * Creates a link event generator
+	 * @param simulator Simulator
+	 * @param range Radio range
+	 */
+	public LinkEventGenerator(Simulator simulator, double range) {
+		this.curSimulation = simulator;
+		this.range = range;
+		name = "Link event generator";
+	}
+
+	/**
+	 * Registers a listener receiving the link events
+	 * @param listener Link listener
+	 */
+	public void addListener(LinkListener listener) {
+		listeners.add(listener);
+	}
+
+	public void init() {
+		try {
+			writer = new BufferedWriter(new FileWriter(new File(curSimulation.outputDirectory + "/contacts.txt")));
+		} catch (Exception e) {
+			System.err.println(e.getLocalizedMessage());
+		}
+	}
+
+	public void next() {
+		// link events are computed from the events
+	}
+
+	public void addNode(double time, MobileNode node) {
+		// nodes are added with their JOIN event
+	}
+
+	public void removeNode(double time, MobileNode node) {
+		// nodes are removed with their LEAVE event
+	}
+
+	/**
+	 * Receives the next event, events with the same start time are processed together
+	 */
+	public void addEvent(Event event) {
+		if (batchSize>0 && event.time!=batchTime) processBatch();
+		batchTime = event.time;
+
+		if (batchSize==batchTrack.length) {
+			batchTrack = Arrays.copyOf(batchTrack, 2*batchSize);
+			batchType = Arrays.copyOf(batchType, 2*batchSize);
+			batchValues = Arrays.copyOf(batchValues, 2*batchSize);
+			for (int i=batchSize; i<batchValues.length; i++) batchValues[i] = new double[5];
+		}
+		double[] values = batchValues[batchSize];
+		values[0] = event.x;
+		values[1] = event.y;
+		values[2] = event.x;
+		values[3] = event.y;
+		values[4] = event.duration;
+		if (event.type==Event.MOVE) {
+			Move move = (Move)event;
+			values[2] = move.moveToX;
+			values[3] = move.moveToY;
+		}
+		batchTrack[batchSize] = getTrack(event.node);
+		batchType[batchSize] = event.type;
+		batchSize++;
+	}
+
+	/**
+	 * Returns the movement of a node
+	 * @param node Node
+	 * @return Movement
+	 */
+	Track getTrack(MobileNode node) {
+		if (node.id>=tracks.length) tracks = Arrays.copyOf(tracks, Math.max(2*tracks.length, node.id+1));
+		Track track = tracks[node.id];
+		if (track==null) {
+			track = tracks[node.id] = new Track(node);
+			trackList.add(track);
+		}
+		return track;
+	}
+
+	/**
+	 * Reports the link events before the events of the current batch and applies the new movements
+	 */
+	void processBatch() {
+		double time = batchTime;
+		if (batches++==0) observationStart = time;
+
+		// the candidate pairs expire before this batch
+		while (grid!=null && nextRebuild<=time) {
+			advance(nextRebuild);
+			rebuild(nextRebuild);
+		}
+		advance(time);
+
+		double maxSpeed = 0;
+		for (int i=0; i<batchSize; i++) {
+			Track track = batchTrack[i];
+			double[] values = batchValues[i];
+			batchTrack[i] = null;
+			if (batchType[i]==Event.LEAVE) {
+				leave(track, time);
+				continue;
+			}
+
+			double x = values[0];
+			double y = values[1];
+			double vx = 0;
+			double vy = 0;
+			double end = Double.POSITIVE_INFINITY;
+			if (batchType[i]==Event.MOVE) {
+				double duration = values[4];
+				if (duration>0 && duration<Double.POSITIVE_INFINITY) {
+					vx = (values[2] - x)/duration;
+					vy = (values[3] - y)/duration;
+					end = time + duration;
+					maxSpeed = Math.max(maxSpeed, Math.sqrt(vx*vx + vy*vy));
+				} else {
+					x = values[2];
+					y = values[3];
+				}
+			}
+
+			// nodes appearing at a new position are added to the spatial hash
+			if (!track.present || Math.abs(track.getX(time) - x)>EPSILON || Math.abs(track.getY(time) - y)>EPSILON) {
+				if (track.inserted!=batches) {
+					track.inserted = batches;
+					insertedTracks.add(track);
+				}
+			}
+			track.present = true;
+			track.time = time;
+			track.x = x;
+			track.y = y;
+			track.vx = vx;
+			track.vy = vy;
+			track.end = end;
+			if (track.changed!=batches) {
+				track.changed = batches;
+				changedTracks.add(track);
+			}
+		}
+		batchSize = 0;
+
+		if (grid==null || maxSpeed>speedBound) {
+			speedBound = Math.max(speedBound, SPEED_MARGIN*maxSpeed);
+			rebuild(time);
+		} else {
+			for (int i=0; i<insertedTracks.size(); i++) {
+				Track track = insertedTracks.get(i);
+				if (track.present) insert(track, time);
+			}
+			for (int i=0; i<changedTracks.size(); i++) {
+				Track track = changedTracks.get(i);
+				if (!track.present) continue;
+				for (int j=0; j<track.pairs.size(); j++) {
+					Pair pair = track.pairs.get(j);
+					if (pair.removed || pair.updated==batches) continue;
+					pair.updated = batches;
+					update(pair, time, true);
+				}
+			}
+		}
+		insertedTracks.clear();
+		changedTracks.clear();
+	}
+
+	/**
+	 * Reports the link events before the given time
+	 * @param limit Time limit (exclusive)
+	 */
+	void advance(double limit) {
+		while (!queue.isEmpty() && queue.peek().time<limit) {
+			Update next = queue.poll();
+			Pair pair = next.pair;
+			if (pair.removed || next.version!=pair.version) continue;
+			if (next.type==CHECK) {
+				update(pair, next.time, true);
+			} else {
+				setLink(pair, next.time, next.type==UP);
+				update(pair, next.time, false);
+			}
+		}
+	}
+
+	/**
+	 * Solves the next crossing of the radio range of a pair and schedules it
+	 * @param pair Pair
+	 * @param time Current time
+	 * @param check Indicates that the link state is verified at the current time (false directly after a crossing)
+	 */
+	void update(Pair pair, double time, boolean check) {
+		pairUpdates++;
+		pair.version++;
+		Track a = pair.a;
+		Track b = pair.b;
+		double dx = a.getX(time) - b.getX(time);
+		double dy = a.getY(time) - b.getY(time);
+		double c = dx*dx + dy*dy - range*range;
+		if (check && (c<=0)!=pair.up) setLink(pair, time, c<=0);
+
+		// relative movement until the movement of one of the nodes ends
+		double wx = 0;
+		double wy = 0;
+		double horizon = Double.POSITIVE_INFINITY;
+		if (time<a.end) {
+			wx+=a.vx;
+			wy+=a.vy;
+			horizon = a.end;
+		}
+		if (time<b.end) {
+			wx-=b.vx;
+			wy-=b.vy;
+			horizon = Math.min(horizon, b.end);
+		}
+
+		// roots of |d + w*s|^2 = range^2 (numerically stable form)
+		double next = Double.POSITIVE_INFINITY;
+		int type = CHECK;
+		double qa = wx*wx + wy*wy;
+		if (qa>0) {
+			double qb = 2*(dx*wx + dy*wy);
+			double discriminant = qb*qb - 4*qa*c;
+			if (pair.up || discriminant>0) {
+				double root = Math.sqrt(Math.max(0, discriminant));
+				double q = -0.5*(qb + (qb>=0 ? root : -root));
+				double root1 = 0;
+				double root2 = 0;
+				if (q!=0) {
+					root1 = Math.min(q/qa, c/q);
+					root2 = Math.max(q/qa, c/q);
+				}
+				if (pair.up) {
+					next = time + Math.max(0, root2);
+					type = DOWN;
+				} else if (qb<0) {
+					next = time + Math.max(0, root1);
+					type = UP;
+				}
+			}
+		}
+		if (next>horizon) {
+			next = horizon;
+			type = CHECK;
+		}
+		// the pairs are determined again at the next rebuild
+		if (next<nextRebuild) queue.add(new Update(next, sequence++, pair, type));
+	}
+
+	/**
+	 * Changes the link state of a pair and reports the link event
+	 * @param pair Pair
+	 * @param time Time of the link event
+	 * @param up Indicates that the nodes have come into range
+	 */
+	void setLink(Pair pair, double time, boolean up) {
+		pair.up = up;
+		linkEvents++;
+		MobileNode nodeA = pair.a.node;
+		MobileNode nodeB = pair.b.node;
+		try {
+			writer.write(time + " CONN " + nodeA.id + " " + nodeB.id + (up ? " up\n" : " down\n"));
+		} catch (Exception e) {
+			System.err.println(e.getMessage());
+		}
+		if (up) {
+			pair.startTime = time;
+			pair.startCensored = (time<=observationStart);
+			for (int i=0; i<listeners.size(); i++) listeners.get(i).linkUp(time, nodeA, nodeB);
+		} else {
+			// links broken at the end of the simulation (closed by finish or by the final leave events) are censored
+			boolean censored = pair.startCensored || time>=curSimulation.duration;
+			for (int i=0; i<listeners.size(); i++) listeners.get(i).linkDown(time, nodeA, nodeB, pair.startTime, censored);
+		}
+	}
+
+	/**
+	 * Removes all pairs of a node leaving the simulation
+	 * @param track Movement of the node
+	 * @param time Current time
+	 */
+	void leave(Track track, double time) {
+		if (!track.present) return;
+		track.present = false;
+		for (int i=0; i<track.pairs.size(); i++) {
+			Pair pair = track.pairs.get(i);
+			if (pair.removed) continue;
+			if (pair.up) setLink(pair, time, false);
+			pair.removed = true;
+			pairs.remove(pair.key);
+		}
+		track.pairs.clear();
+	}
+
+	/**
+	 * Determines the candidate pairs of all nodes
+	 * @param time Current time
+	 */
+	void rebuild(double time) {
+		queue.clear();
+		// the distance two nodes can approach each other until the next rebuild is at most the radio range
+		double interval = (speedBound>0) ? Math.min(REBUILD_INTERVAL, range/(2*speedBound)) : REBUILD_INTERVAL;
+		nextRebuild = time + interval;
+		cellSize = range + 2*speedBound*interval;
+		LongMap<Pair> previous = pairs;
+		pairs = new LongMap<Pair>(previous.size());
+		grid = new LongMap<ArrayList<Track>>(trackList.size());
+
+		for (int i=0; i<trackList.size(); i++) {
+			Track track = trackList.get(i);
+			track.pairs.clear();
+			if (track.present) insert(track, time);
+		}
+
+		// link state of the pairs which remain candidates
+		for (int i=0; i<previous.getCapacity(); i++) {
+			Pair old = previous.getValue(i);
+			if (old==null) continue;
+			old.removed = true;
+			Pair pair = pairs.get(old.key);
+			if (pair!=null) {
+				pair.up = old.up;
+				pair.startTime = old.startTime;
+				pair.startCensored = old.startCensored;
+			} else if (old.up) {
+				setLink(old, time, false);
+			}
+		}
+
+		for (int i=0; i<pairs.getCapacity(); i++) {
+			Pair pair = pairs.getValue(i);
+			if (pair!=null) update(pair, time, true);
+		}
+	}
+
+	/**
+	 * Adds a node to the spatial hash and creates its candidate pairs with the nodes in the adjacent cells
+	 * @param track Movement of the node
+	 * @param time Current time
+	 */
+	void insert(Track track, double time) {
+		double x = track.getX(time);
+		double y = track.getY(time);
+		int cellX = (int)Math.floor(x/cellSize);
+		int cellY = (int)Math.floor(y/cellSize);
+		for (int i=-1; i<=1; i++) {
+			for (int j=-1; j<=1; j++) {
+				ArrayList<Track> cell = grid.get(getCell(cellX + i, cellY + j));
+				if (cell==null) continue;
+				for (int k=0; k<cell.size(); k++) {
+					Track other = cell.get(k);
+					if (other==track || !other.present) continue;
+					double dx = other.getX(time) - x;
+					double dy = other.getY(time) - y;
+					if (dx*dx + dy*dy<=cellSize*cellSize) addPair(track, other);
+				}
+			}
+		}
+		long key = getCell(cellX, cellY);
+		ArrayList<Track> cell = grid.get(key);
+		if (cell==null) grid.put(key, cell = new ArrayList<Track>());
+		cell.add(track);
+	}
+
+	/**
+	 * Returns the key of a grid cell
+	 */
+	static long getCell(int x, int y) {
+		return ((long)x<<32) | (y & 0xffffffffL);
+	}
+
+	/**
+	 * Creates a candidate pair unless it exists already
+	 */
+	void addPair(Track track1, Track track2) {
+		long key = Link.getKey(track1.node.id, track2.node.id);
+		if (pairs.get(key)!=null) return;
+		Pair pair = (track1.node.id<track2.node.id) ? new Pair(track1, track2, key) : new Pair(track2, track1, key);
+		pairs.put(key, pair);
+		track1.pairs.add(pair);
+		track2.pairs.add(pair);
+	}
+
+	/**
+	 * Returns the number of link events
+	 * @return Number of link events
+	 */
+	public long getLinkEvents() {
+		return linkEvents;
+	}
+
+	/**
+	 * Returns the number of times the crossings of a pair have been solved
+	 * @return Number of pair updates
+	 */
+	public long getPairUpdates() {
+		return pairUpdates;
+	}
+
+	public void finish() {
+		if (batchSize>0) processBatch();
+		double time = curSimulation.duration;
+		while (grid!=null && nextRebuild<=time) {
+			advance(nextRebuild);
+			rebuild(nextRebuild);
+		}
+		advance(time);
+
+		// links which are still established at the end of the simulation (end not observed)
+		for (int i=0; i<pairs.getCapacity(); i++) {
+			Pair pair = pairs.getValue(i);
+			if (pair!=null && pair.up) setLink(pair, time, false);
+		}
+
+		try {
+			writer.close();
+		} catch (Exception e) {
+			System.err.println(e.getMessage());
+		}
+	}
+
+}
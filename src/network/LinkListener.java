@@ -0,0 +1,58 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+package network;
+
+import mobility.MobileNode;
+
+/**
+ * LinkListener receives the link events computed by the LinkEventGenerator. Events are delivered in order of
+ * their time, the first node of a link has the smaller identifier.
+ */
+public interface LinkListener {
+
+	/**
+	 * Two nodes have come into range
+	 * @param time Time when the link is established
+	 * @param nodeA Node with the smaller identifier
+	 * @param nodeB Node with the larger identifier
+	 */
+	public void linkUp(double time, MobileNode nodeA, MobileNode nodeB);
+
+	/**
+	 * Two nodes have gone out of range, or one of them has left the simulation
+	 * @param time Time when the link is broken
+	 * @param nodeA Node with the smaller identifier
+	 * @param nodeB Node with the larger identifier
+	 * @param startTime Time when the link was established
+	 * @param censored Indicates that the duration of the link is not fully observed: the link has been established
+	 * at the start of the observation or it is closed at the end of the simulation
+	 */
+	public void linkDown(double time, MobileNode nodeA, MobileNode nodeB, double startTime, boolean censored);
+
+}
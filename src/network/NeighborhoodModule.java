@@ -0,0 +1,539 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+package network;
+
+import java.util.*;
+
+import mobility.MobileNode;
+import model.GraphEdge;
+import model.LongMap;
+import model.ObstacleIndex;
+import simulator.Module;
+import simulator.Simulator;
+import simulator.TimerWheel;
+
+
+/**
+ * NeighborhoodModule maintains the neighborhood graph of the simulation. Two nodes are neighbors if their
+ * distance is at most the radio range. In every step, the nodes are bucketed into a uniform grid with the radio
+ * range as cell size (spatial hash), and only pairs of nodes in the same or adjacent cells are tested, so the
+ * expected effort per step is linear in the number of nodes and links.
+ * In kinetic mode, the pairs of nodes which can come into range before the next rebuild (distance at most the
+ * radio range plus the distance two nodes can approach each other at the maximum node speed) are determined
+ * with the spatial hash only once per rebuild interval. Each of these pairs is re-examined at the first step
+ * in which its distance can have crossed the radio range, so the effort between the rebuilds depends on the
+ * number of pairs close to the radio range rather than on the number of nodes. If the mobility model bounds the
+ * node speeds (MobilityModel.getMaxSpeed), this bound is used for scheduling and the nodes are not visited between
+ * the rebuilds. Otherwise the speed and the displacement of the nodes are checked in every step, a node exceeding
+ * the speed used for scheduling (e.g. a node appearing at a new position) causes an immediate rebuild.
+ * The timer wheel and the candidate pairs are reused by the rebuilds.
+ * With an interference model, the links are additionally required to reach the SINR threshold in both
+ * directions; the interference sums are computed once per step, and the kinetic mode is not used since the
+ * interference depends on the positions of all nodes.
+ * With shadowing, the links additionally require a free line of sight between the nodes, which is looked up in
+ * the obstacle index of the map (Simulator.obstacles); the kinetic mode is not used in this case either.
+ * The module updates the edges of Simulator.neighborhoodGraph and the neighbor sets of the nodes, and reports
+ * new and broken links to the registered link listeners.
+ */
+public class NeighborhoodModule extends Module {
+
+	/** offsets of the adjacent cells which are searched for each cell (each pair of cells is searched once) */
+	static final int[][] FORWARD_CELLS = {{1, -1}, {1, 0}, {1, 1}, {0, 1}};
+
+	/**
+	 * Pair of nodes re-examined in kinetic mode
+	 */
+	static class Pair {
+		MobileNode nodeA;
+		MobileNode nodeB;
+	}
+
+	Simulator curSimulation;
+	/** radio range */
+	double range = 0;
+	/** time between two rebuilds of the candidate pairs in kinetic mode (0=neighbors are recomputed in every step) */
+	double kineticInterval = 0;
+
+	/** SINR model deciding the links (null=all nodes within the radio range are linked) */
+	InterferenceModel interference = null;
+	/** indicates that links require a free line of sight */
+	boolean shadowing = false;
+	/** obstacles blocking the line of sight (null=no shadowing) */
+	ObstacleIndex obstacles = null;
+	/** listeners receiving the new and broken links */
+	ArrayList<LinkListener> listeners = new ArrayList<LinkListener>();
+	/** current links indexed by their key (primitive keys, see LongMap) */
+	LongMap<Link> links = new LongMap<Link>();
+	/** broken links which are reused for new links */
+	ArrayList<Link> freeLinks = new ArrayList<Link>();
+	/** number of steps performed */
+	long step = 0;
+	/** time of the first step (links established at this time have been up before) */
+	double observationStart = Double.NEGATIVE_INFINITY;
+	/** number of node pairs whose distance has been calculated */
+	long pairTests = 0;
+	/** nodes whose number of new or lost neighbors has been changed in the current step */
+	ArrayList<MobileNode> changedNodes = new ArrayList<MobileNode>();
+	/** indicates that the set of participating nodes has changed */
+	boolean nodesChanged = true;
+
+	/** speed bound used for scheduling the re-examinations (kinetic mode) */
+	double speedBound = 0;
+	/** time of the next rebuild of the candidate pairs (kinetic mode) */
+	double nextRebuild = Double.NEGATIVE_INFINITY;
+	/** speed bound of the mobility model, queried at each rebuild (kinetic mode) */
+	double modelSpeedBound = Double.POSITIVE_INFINITY;
+	/** re-examinations of candidate pairs scheduled by simulation step, cleared by each rebuild (kinetic mode) */
+	TimerWheel<Pair> schedule = null;
+	/** candidate pairs, the first pairCount pairs belong to the current rebuild and the others are reused (kinetic mode) */
+	ArrayList<Pair> pairs = new ArrayList<Pair>();
+	int pairCount = 0;
+	/** pairs due in the current step */
+	ArrayList<Pair> duePairs = new ArrayList<Pair>();
+	/** node positions in the previous step indexed by node identifier (kinetic mode) */
+	double[] lastX = new double[0];
+	double[] lastY = new double[0];
+
+	/** nodes in the order of their bucket */
+	MobileNode[] sorted = new MobileNode[0];
+	/** cell coordinates of the nodes (in bucket order) */
+	int[] cellX = new int[0];
+	int[] cellY = new int[0];
+	/** first node of each bucket (in bucket order), bucket b contains the nodes bucketStart[b]..bucketStart[b+1]-1 */
+	int[] bucketStart = new int[1];
+	/** mask for the bucket index (number of buckets is a power of two) */
+	int mask = 0;
+
+	/** temporary arrays */
+	MobileNode[] unsorted = new MobileNode[0];
+	int[] bucket = new int[0];
+	int[] tempX = new int[0];
+	int[] tempY = new int[0];
+
+
+	/**
+	 * Creates a neighborhood module recomputing the neighbors in every step
+	 * @param simulator Simulator
+	 * @param range Radio range
+	 */
+	public NeighborhoodModule(Simulator simulator, double range) {
+		this(simulator, range, 0);
+	}
+
+	/**
+	 * Creates a neighborhood module
+	 * @param simulator Simulator
+	 * @param range Radio range
+	 * @param kineticInterval Time between two rebuilds of the candidate pairs (0=neighbors are recomputed in every step)
+	 */
+	public NeighborhoodModule(Simulator simulator, double range, double kineticInterval) {
+		this.curSimulation = simulator;
+		this.range = range;
+		this.kineticInterval = kineticInterval;
+		name = "Neighborhood module";
+	}
+
+	/**
+	 * Registers a listener receiving the new and broken links
+	 * @param listener Link listener
+	 */
+	public void addListener(LinkListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Decides the links by the SINR of the nodes, the radio range is limited to the maximum link distance of
+	 * the model
+	 * @param model Interference model
+	 */
+	public void setInterferenceModel(InterferenceModel model) {
+		interference = model;
+		range = Math.min(range, model.getMaxDistance());
+		kineticInterval = 0;
+	}
+
+	/**
+	 * Requires a free line of sight between linked nodes (the obstacles are taken from the simulator)
+	 */
+	public void setShadowing() {
+		shadowing = true;
+		kineticInterval = 0;
+	}
+
+	public void init() {
+		if (shadowing) {
+			obstacles = curSimulation.obstacles;
+			if (obstacles==null) System.err.println("Shadowing: no obstacles are defined by the mobility model");
+		}
+		curSimulation.neighborhoodGraph.setEdges(new ArrayList<Link>());
+	}
+
+	/**
+	 * Updates the neighborhood graph for the current node positions
+	 */
+	public void next() {
+		if (step++==0) observationStart = curSimulation.time;
+
+		for (int i=0; i<changedNodes.size(); i++) {
+			changedNodes.get(i).neighborsNew = 0;
+			changedNodes.get(i).neighborsLost = 0;
+		}
+		changedNodes.clear();
+
+		if (kineticInterval>0) {
+			nextKinetic();
+		} else {
+			if (interference!=null) interference.update(curSimulation.nodes);
+			buildBuckets(curSimulation.nodes, range);
+			findPairs(curSimulation.nodes.size(), range, false);
+			removeUnseenLinks();
+		}
+
+		if (nodesChanged) {
+			curSimulation.neighborhoodGraph.setNodes(curSimulation.nodes);
+			nodesChanged = false;
+		}
+	}
+
+	/**
+	 * Updates the links in kinetic mode
+	 */
+	void nextKinetic() {
+		List<MobileNode> nodes = curSimulation.nodes;
+		double maxSpeed = 0;
+		double maxDistance = speedBound*curSimulation.step*(1+1e-9);
+		boolean exceeded = false;
+		// nodes of a model bounding the speeds cannot exceed the speed used for scheduling
+		if (schedule!=null && modelSpeedBound<=speedBound) nodes = Collections.emptyList();
+		for (int i=0; i<nodes.size(); i++) {
+			MobileNode node = nodes.get(i);
+			maxSpeed = Math.max(maxSpeed, node.speed);
+			if (node.id>=lastX.length) {
+				int capacity = Math.max(2*lastX.length, node.id+1);
+				lastX = Arrays.copyOf(lastX, capacity);
+				lastY = Arrays.copyOf(lastY, capacity);
+			}
+			double dx = node.x - lastX[node.id];
+			double dy = node.y - lastY[node.id];
+			if (dx*dx + dy*dy>maxDistance*maxDistance) exceeded = true;
+			lastX[node.id] = node.x;
+			lastY[node.id] = node.y;
+		}
+
+		if (schedule==null || curSimulation.time>=nextRebuild || maxSpeed>speedBound || exceeded) {
+			rebuild(maxSpeed);
+			return;
+		}
+
+		// re-examine the pairs which are due in this step
+		schedule.advance(duePairs);
+		for (int i=0; i<duePairs.size(); i++) {
+			Pair pair = duePairs.get(i);
+			if (pair.nodeA.participating && pair.nodeB.participating) examine(pair);
+		}
+		duePairs.clear();
+	}
+
+	/**
+	 * Determines the candidate pairs and the links for the next rebuild interval
+	 * @param maxSpeed Current maximum node speed
+	 */
+	void rebuild(double maxSpeed) {
+		if (curSimulation.mobilityModel!=null) modelSpeedBound = curSimulation.mobilityModel.getMaxSpeed();
+		if (modelSpeedBound<Double.POSITIVE_INFINITY) maxSpeed = Math.max(maxSpeed, modelSpeedBound);
+		speedBound = Math.max(speedBound, maxSpeed);
+		nextRebuild = curSimulation.time + kineticInterval;
+		if (schedule==null) schedule = new TimerWheel<Pair>(Math.max(16, (int)Math.ceil(kineticInterval/curSimulation.step)));
+		else schedule.clear();
+		pairCount = 0;
+
+		// pairs which can come into range before the next rebuild
+		double radius = range + 2*speedBound*kineticInterval;
+		buildBuckets(curSimulation.nodes, radius);
+		findPairs(curSimulation.nodes.size(), radius, true);
+		removeUnseenLinks();
+	}
+
+	/**
+	 * Tests a candidate pair, updates its link and schedules the next examination
+	 * @param pair Candidate pair
+	 */
+	void examine(Pair pair) {
+		double dx = pair.nodeA.x - pair.nodeB.x;
+		double dy = pair.nodeA.y - pair.nodeB.y;
+		double distance = Math.sqrt(dx*dx + dy*dy);
+		pairTests++;
+		updateLink(pair.nodeA, pair.nodeB, dx*dx + dy*dy<=range*range);
+
+		// the distance changes by at most twice the speed bound per time unit (with a margin for rounding errors)
+		if (speedBound<=0) return;
+		long steps = (long)Math.floor((Math.abs(distance - range) - 1e-9*range)/(2*speedBound*curSimulation.step));
+		if (steps<1) steps = 1;
+		if (curSimulation.time + steps*curSimulation.step>=nextRebuild) return;
+		schedule.schedule(pair, steps);
+	}
+
+	/**
+	 * Creates or removes the link between two nodes
+	 * @param node1 First node
+	 * @param node2 Second node
+	 * @param inRange Indicates that the nodes are in range
+	 * @return The link or null if the nodes are not in range
+	 */
+	Link updateLink(MobileNode node1, MobileNode node2, boolean inRange) {
+		long key = Link.getKey(node1.id, node2.id);
+		Link link = links.get(key);
+		if (inRange && link==null) {
+			link = (freeLinks.size()>0) ? freeLinks.remove(freeLinks.size()-1) : new Link();
+			if (node1.id<node2.id) link.set(node1, node2, curSimulation.time);
+			else link.set(node2, node1, curSimulation.time);
+			links.put(key, link);
+			connect(link);
+		} else if (!inRange && link!=null) {
+			links.remove(key);
+			disconnect(link);
+			link = null;
+		}
+		return link;
+	}
+
+	/**
+	 * Removes the links which have not been observed in this step
+	 */
+	void removeUnseenLinks() {
+		// the edges of the graph are the current links, a removed edge is replaced by the last edge (already visited)
+		List<GraphEdge> edges = curSimulation.neighborhoodGraph.getEdges();
+		for (int i=edges.size()-1; i>=0; i--) {
+			Link link = (Link)edges.get(i);
+			if (link.lastSeen!=step) {
+				links.remove(Link.getKey(link.getMobileNodeA().id, link.getMobileNodeB().id));
+				disconnect(link);
+			}
+		}
+	}
+
+	/**
+	 * Sorts the nodes into the buckets of the spatial hash (counting sort)
+	 * @param nodes Participating nodes
+	 * @param cellSize Size of a grid cell
+	 */
+	void buildBuckets(List<MobileNode> nodes, double cellSize) {
+		int n = nodes.size();
+		if (n>sorted.length) {
+			int capacity = Math.max(16, 2*n);
+			sorted = new MobileNode[capacity];
+			unsorted = new MobileNode[capacity];
+			cellX = new int[capacity];
+			cellY = new int[capacity];
+			tempX = new int[capacity];
+			tempY = new int[capacity];
+			bucket = new int[capacity];
+		}
+		// about two buckets per node
+		int buckets = Integer.highestOneBit(Math.max(1, n))*2;
+		if (bucketStart.length!=buckets+1) bucketStart = new int[buckets+1];
+		else Arrays.fill(bucketStart, 0);
+		mask = buckets-1;
+
+		for (int i=0; i<n; i++) {
+			MobileNode node = nodes.get(i);
+			unsorted[i] = node;
+			tempX[i] = (int)Math.floor(node.x/cellSize);
+			tempY[i] = (int)Math.floor(node.y/cellSize);
+			bucket[i] = getBucket(tempX[i], tempY[i]);
+			bucketStart[bucket[i]+1]++;
+		}
+		for (int b=0; b<buckets; b++) bucketStart[b+1]+=bucketStart[b];
+		for (int i=0; i<n; i++) {
+			int position = bucketStart[bucket[i]]++;
+			sorted[position] = unsorted[i];
+			cellX[position] = tempX[i];
+			cellY[position] = tempY[i];
+		}
+		// restore the start positions
+		for (int b=buckets; b>0; b--) bucketStart[b] = bucketStart[b-1];
+		bucketStart[0] = 0;
+		Arrays.fill(unsorted, 0, n, null);
+	}
+
+	/**
+	 * Returns the bucket of a cell
+	 * @param x Cell x-coordinate
+	 * @param y Cell y-coordinate
+	 * @return Bucket index
+	 */
+	int getBucket(int x, int y) {
+		return ((x*73856093) ^ (y*19349663)) & mask;
+	}
+
+	/**
+	 * Tests all pairs of nodes in the same or adjacent cells
+	 * @param n Number of nodes
+	 * @param radius Maximum distance of a pair (size of a grid cell)
+	 * @param candidates Indicates that candidate pairs are created for the kinetic mode
+	 */
+	void findPairs(int n, double radius, boolean candidates) {
+		double radiusSquared = radius*radius;
+		for (int i=0; i<n; i++) {
+			MobileNode node = sorted[i];
+			int x = cellX[i];
+			int y = cellY[i];
+
+			// nodes in the same cell (behind this node in the same bucket)
+			int end = bucketStart[getBucket(x, y)+1];
+			for (int j=i+1; j<end; j++) {
+				if (cellX[j]==x && cellY[j]==y) test(node, sorted[j], radiusSquared, candidates);
+			}
+
+			// nodes in the adjacent cells
+			for (int k=0; k<FORWARD_CELLS.length; k++) {
+				int neighborX = x + FORWARD_CELLS[k][0];
+				int neighborY = y + FORWARD_CELLS[k][1];
+				int b = getBucket(neighborX, neighborY);
+				for (int j=bucketStart[b]; j<bucketStart[b+1]; j++) {
+					if (cellX[j]==neighborX && cellY[j]==neighborY) test(node, sorted[j], radiusSquared, candidates);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests whether two nodes are within the given radius and records the link or candidate pair
+	 */
+	void test(MobileNode node1, MobileNode node2, double radiusSquared, boolean candidates) {
+		double dx = node1.x - node2.x;
+		double dy = node1.y - node2.y;
+		pairTests++;
+		if (dx*dx + dy*dy>radiusSquared) return;
+		if (interference!=null && !candidates && !interference.isLinked(node1, node2)) return;
+		if (obstacles!=null && !candidates && !obstacles.isVisible(node1.x, node1.y, node2.x, node2.y)) return;
+
+		if (candidates) {
+			if (pairCount==pairs.size()) pairs.add(new Pair());
+			Pair pair = pairs.get(pairCount++);
+			pair.nodeA = node1;
+			pair.nodeB = node2;
+			examine(pair);
+			Link link = links.get(Link.getKey(node1.id, node2.id));
+			if (link!=null) link.lastSeen = step;
+		} else {
+			updateLink(node1, node2, true).lastSeen = step;
+		}
+	}
+
+	/**
+	 * Updates the neighbor sets and the neighborhood graph for a new link
+	 */
+	void connect(Link link) {
+		MobileNode nodeA = link.getMobileNodeA();
+		MobileNode nodeB = link.getMobileNodeB();
+		nodeA.currentNeighbors.add(nodeB);
+		nodeB.currentNeighbors.add(nodeA);
+		if (nodeA.neighborsNew==0 && nodeA.neighborsLost==0) changedNodes.add(nodeA);
+		if (nodeB.neighborsNew==0 && nodeB.neighborsLost==0) changedNodes.add(nodeB);
+		nodeA.neighborsNew++;
+		nodeB.neighborsNew++;
+
+		List<GraphEdge> edges = curSimulation.neighborhoodGraph.getEdges();
+		link.index = edges.size();
+		edges.add(link);
+		curSimulation.neighborhoodGraph.invalidateAdjacency();
+
+		for (int i=0; i<listeners.size(); i++) listeners.get(i).linkUp(curSimulation.time, nodeA, nodeB);
+	}
+
+	/**
+	 * Updates the neighbor sets and the neighborhood graph for a link which does not exist anymore
+	 */
+	void disconnect(Link link) {
+		MobileNode nodeA = link.getMobileNodeA();
+		MobileNode nodeB = link.getMobileNodeB();
+		nodeA.currentNeighbors.remove(nodeB);
+		nodeB.currentNeighbors.remove(nodeA);
+		if (nodeA.neighborsNew==0 && nodeA.neighborsLost==0) changedNodes.add(nodeA);
+		if (nodeB.neighborsNew==0 && nodeB.neighborsLost==0) changedNodes.add(nodeB);
+		nodeA.neighborsLost++;
+		nodeB.neighborsLost++;
+
+		// remove the edge from the graph (the last edge takes its place)
+		List<GraphEdge> edges = curSimulation.neighborhoodGraph.getEdges();
+		Link last = (Link)edges.remove(edges.size()-1);
+		if (last!=link) {
+			edges.set(link.index, last);
+			last.index = link.index;
+		}
+		link.index = -1;
+		curSimulation.neighborhoodGraph.invalidateAdjacency();
+
+		for (int i=0; i<listeners.size(); i++) listeners.get(i).linkDown(curSimulation.time, nodeA, nodeB, link.startTime, link.startTime<=observationStart);
+		freeLinks.add(link);
+	}
+
+	/**
+	 * Returns the number of current links
+	 * @return Number of links
+	 */
+	public int getLinkCount() {
+		return links.size();
+	}
+
+	/**
+	 * Returns the number of node pairs whose distance has been calculated so far
+	 * @return Number of pair tests
+	 */
+	public long getPairTests() {
+		return pairTests;
+	}
+
+	public void finish() {
+		if (interference!=null) interference.shutdown();
+	}
+
+	/**
+	 * Registers a node joining the simulation, its links are found in the next step
+	 */
+	public void addNode(double time, MobileNode node) {
+		nodesChanged = true;
+		// the candidate pairs of the node are not known
+		nextRebuild = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Removes all links of a node leaving the simulation
+	 */
+	public void removeNode(double time, MobileNode node) {
+		nodesChanged = true;
+		MobileNode[] neighbors = node.currentNeighbors.toArray(new MobileNode[0]);
+		for (int i=0; i<neighbors.length; i++) {
+			Link link = links.remove(Link.getKey(node.id, neighbors[i].id));
+			if (link!=null) disconnect(link);
+		}
+	}
+
+}
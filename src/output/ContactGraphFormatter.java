@@ -0,0 +1,211 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+package output;
+
+import java.io.*;
+import java.util.*;
+
+import mobility.MobileNode;
+import network.LinkListener;
+import simulator.Module;
+import simulator.Simulator;
+
+
+/**
+ * ContactGraphFormatter writes the temporal contact graph, i.e. the link intervals (nodeA, nodeB, start, end)
+ * received from the LinkEventGenerator, to contacts.bin in a compact binary format. The times are rounded to
+ * integer ticks of RESOLUTION seconds. The intervals are written in order of their end time, in blocks of
+ * BLOCK_SIZE intervals; within a block, each interval is stored as variable-length integers (end time relative
+ * to the previous end time, duration, first node, difference of the node identifiers). An index at the end
+ * of the file holds the position and the time span of each block, so that ContactGraphReader can read the
+ * intervals of a time window without scanning the file.
+ * <p>
+ * Layout: header (int MAGIC, int VERSION, double resolution), blocks, index (per block: long position,
+ * int length in bytes, int number of intervals, long earliest start, long latest end), trailer (long position
+ * of the index, int number of blocks, int MAGIC).
+ * The formatter is a plain module rather than a TraceFormatter, it does not need the node events.
+ */
+public final class ContactGraphFormatter extends Module implements LinkListener {
+
+	/** identifies the file format */
+	public static final int MAGIC = 0x474D4347;
+	public static final int VERSION = 1;
+	/** time resolution in seconds */
+	public static final double RESOLUTION = 1e-3;
+	/** number of intervals per block */
+	public static final int BLOCK_SIZE = 4096;
+
+	Simulator curSimulation;
+	/** output stream of the file */
+	DataOutputStream out = null;
+	/** number of bytes written */
+	long position = 0;
+
+	/** encoded intervals of the current block */
+	byte[] block = new byte[16*BLOCK_SIZE];
+	int blockLength = 0;
+	int blockCount = 0;
+	/** end of the last interval of the current block in ticks */
+	long lastEnd = 0;
+	/** time span of the current block in ticks */
+	long minStart = Long.MAX_VALUE;
+	long maxEnd = Long.MIN_VALUE;
+
+	/** index entries of the written blocks */
+	long[] blockPositions = new long[16];
+	int[] blockLengths = new int[16];
+	int[] blockCounts = new int[16];
+	long[] blockStarts = new long[16];
+	long[] blockEnds = new long[16];
+	int blocks = 0;
+
+
+	/**
+	 * Creates a contact graph formatter
+	 * @param simulator Simulator
+	 */
+	public ContactGraphFormatter(Simulator simulator) {
+		this.curSimulation = simulator;
+		name = "Contact graph formatter";
+	}
+
+	public void init() {
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(curSimulation.outputDirectory + "/contacts.bin")), 1<<16));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeDouble(RESOLUTION);
+			position = 16;
+		} catch (Exception e) {
+			System.err.println(e.getLocalizedMessage());
+		}
+	}
+
+	public void next() {
+		// intervals are received from the link event generator
+	}
+
+	public void addNode(double time, MobileNode node) {
+		// nothing to do
+	}
+
+	public void removeNode(double time, MobileNode node) {
+		// nothing to do
+	}
+
+	public void linkUp(double time, MobileNode nodeA, MobileNode nodeB) {
+		// intervals are written when they are finished
+	}
+
+	public void linkDown(double time, MobileNode nodeA, MobileNode nodeB, double startTime, boolean censored) {
+		long start = Math.round(startTime/RESOLUTION);
+		long end = Math.round(time/RESOLUTION);
+		if (blockLength+40>block.length) block = Arrays.copyOf(block, 2*block.length);
+		writeVarLong(zigZag(end - lastEnd));
+		writeVarLong(end - start);
+		writeVarLong(nodeA.id);
+		writeVarLong(nodeB.id - nodeA.id);
+		lastEnd = end;
+		minStart = Math.min(minStart, start);
+		maxEnd = Math.max(maxEnd, end);
+		if (++blockCount==BLOCK_SIZE) flushBlock();
+	}
+
+	/**
+	 * Maps signed values to unsigned values with a small magnitude
+	 */
+	static long zigZag(long value) {
+		return (value<<1) ^ (value>>63);
+	}
+
+	/**
+	 * Appends a non-negative value to the current block, 7 bits per byte
+	 */
+	void writeVarLong(long value) {
+		while ((value & ~0x7FL)!=0) {
+			block[blockLength++] = (byte)((value & 0x7F) | 0x80);
+			value>>>=7;
+		}
+		block[blockLength++] = (byte)value;
+	}
+
+	/**
+	 * Writes the current block and adds it to the index
+	 */
+	void flushBlock() {
+		if (blockCount==0) return;
+		if (blocks==blockPositions.length) {
+			int capacity = 2*blocks;
+			blockPositions = Arrays.copyOf(blockPositions, capacity);
+			blockLengths = Arrays.copyOf(blockLengths, capacity);
+			blockCounts = Arrays.copyOf(blockCounts, capacity);
+			blockStarts = Arrays.copyOf(blockStarts, capacity);
+			blockEnds = Arrays.copyOf(blockEnds, capacity);
+		}
+		blockPositions[blocks] = position;
+		blockLengths[blocks] = blockLength;
+		blockCounts[blocks] = blockCount;
+		blockStarts[blocks] = minStart;
+		blockEnds[blocks] = maxEnd;
+		blocks++;
+		try {
+			out.write(block, 0, blockLength);
+		} catch (Exception e) {
+			System.err.println(e.getMessage());
+		}
+		position+=blockLength;
+
+		blockLength = 0;
+		blockCount = 0;
+		lastEnd = 0;
+		minStart = Long.MAX_VALUE;
+		maxEnd = Long.MIN_VALUE;
+	}
+
+	public void finish() {
+		// the link event generator closes the remaining links before
+		flushBlock();
+		try {
+			for (int i=0; i<blocks; i++) {
+				out.writeLong(blockPositions[i]);
+				out.writeInt(blockLengths[i]);
+				out.writeInt(blockCounts[i]);
+				out.writeLong(blockStarts[i]);
+				out.writeLong(blockEnds[i]);
+			}
+			out.writeLong(position);
+			out.writeInt(blocks);
+			out.writeInt(MAGIC);
+			out.close();
+		} catch (Exception e) {
+			System.err.println(e.getMessage());
+		}
+	}
+
+}
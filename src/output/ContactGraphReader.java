@@ -0,0 +1,226 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+package output;
+
+import java.io.*;
+import java.util.*;
+
+
+/**
+ * ContactGraphReader reads the link intervals written by ContactGraphFormatter. The block index is loaded
+ * when the file is opened; a query for a time window locates the first block which may contain an interval
+ * of the window by binary search over the end times of the blocks, and reads only the blocks whose time span
+ * overlaps the window.
+ */
+public class ContactGraphReader {
+
+	/**
+	 * Link interval between two nodes
+	 */
+	public static class Interval {
+		/** node with the smaller identifier */
+		public int nodeA;
+		/** node with the larger identifier */
+		public int nodeB;
+		/** time when the link was established */
+		public double start;
+		/** time when the link was broken */
+		public double end;
+
+		public String toString() {
+			return nodeA + " " + nodeB + " " + start + " " + end;
+		}
+	}
+
+	/** file of the contact graph */
+	RandomAccessFile file;
+	/** time resolution in seconds */
+	double resolution;
+
+	/** index entries of the blocks */
+	long[] blockPositions;
+	int[] blockLengths;
+	int[] blockCounts;
+	long[] blockStarts;
+	long[] blockEnds;
+	/** earliest start in ticks of the block and all following blocks */
+	long[] remainingStarts;
+
+
+	/**
+	 * Opens a contact graph file and loads its index
+	 * @param path File
+	 * @throws IOException If the file cannot be read or is not a contact graph file
+	 */
+	public ContactGraphReader(File path) throws IOException {
+		file = new RandomAccessFile(path, "r");
+		if (file.readInt()!=ContactGraphFormatter.MAGIC) throw new IOException("Not a contact graph file: " + path);
+		int version = file.readInt();
+		if (version!=ContactGraphFormatter.VERSION) throw new IOException("Unsupported contact graph version: " + version);
+		resolution = file.readDouble();
+
+		file.seek(file.length() - 16);
+		long indexPosition = file.readLong();
+		int blocks = file.readInt();
+		if (file.readInt()!=ContactGraphFormatter.MAGIC) throw new IOException("Incomplete contact graph file: " + path);
+
+		byte[] index = new byte[32*blocks];
+		file.seek(indexPosition);
+		file.readFully(index);
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(index));
+		blockPositions = new long[blocks];
+		blockLengths = new int[blocks];
+		blockCounts = new int[blocks];
+		blockStarts = new long[blocks];
+		blockEnds = new long[blocks];
+		for (int i=0; i<blocks; i++) {
+			blockPositions[i] = in.readLong();
+			blockLengths[i] = in.readInt();
+			blockCounts[i] = in.readInt();
+			blockStarts[i] = in.readLong();
+			blockEnds[i] = in.readLong();
+		}
+		remainingStarts = new long[blocks];
+		for (int i=blocks-1; i>=0; i--) {
+			remainingStarts[i] = (i==blocks-1) ? blockStarts[i] : Math.min(blockStarts[i], remainingStarts[i+1]);
+		}
+	}
+
+	/**
+	 * Returns the time resolution of the file
+	 * @return Resolution in seconds
+	 */
+	public double getResolution() {
+		return resolution;
+	}
+
+	/**
+	 * Returns the number of blocks
+	 * @return Number of blocks
+	 */
+	public int getBlockCount() {
+		return blockPositions.length;
+	}
+
+	/**
+	 * Returns the number of intervals in the file
+	 * @return Number of intervals
+	 */
+	public long getIntervalCount() {
+		long count = 0;
+		for (int i=0; i<blockCounts.length; i++) count+=blockCounts[i];
+		return count;
+	}
+
+	/**
+	 * Returns the intervals which overlap a time window (start<=to and end>=from), in order of their end time
+	 * @param from Start of the window
+	 * @param to End of the window
+	 * @return Intervals
+	 * @throws IOException If the file cannot be read
+	 */
+	public ArrayList<Interval> read(double from, double to) throws IOException {
+		long first = Math.round(from/resolution);
+		long last = Math.round(to/resolution);
+		ArrayList<Interval> result = new ArrayList<Interval>();
+
+		// the end times of the blocks are ascending
+		int low = 0;
+		int high = blockEnds.length;
+		while (low<high) {
+			int mid = (low+high) >>> 1;
+			if (blockEnds[mid]<first) low = mid+1;
+			else high = mid;
+		}
+		for (int i=low; i<blockEnds.length && remainingStarts[i]<=last; i++) {
+			if (blockStarts[i]>last) continue;
+			readBlock(i, first, last, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns all intervals of a block
+	 * @param block Number of the block
+	 * @return Intervals
+	 * @throws IOException If the file cannot be read
+	 */
+	public ArrayList<Interval> readBlock(int block) throws IOException {
+		ArrayList<Interval> result = new ArrayList<Interval>(blockCounts[block]);
+		readBlock(block, Long.MIN_VALUE, Long.MAX_VALUE, result);
+		return result;
+	}
+
+	/**
+	 * Decodes a block and adds its intervals within the window (in ticks) to a list
+	 */
+	void readBlock(int block, long first, long last, ArrayList<Interval> result) throws IOException {
+		byte[] data = new byte[blockLengths[block]];
+		file.seek(blockPositions[block]);
+		file.readFully(data);
+
+		int[] position = new int[1];
+		long end = 0;
+		for (int i=0; i<blockCounts[block]; i++) {
+			long delta = readVarLong(data, position);
+			end+=(delta>>>1) ^ -(delta & 1);
+			long start = end - readVarLong(data, position);
+			int nodeA = (int)readVarLong(data, position);
+			int nodeB = nodeA + (int)readVarLong(data, position);
+			if (start>last || end<first) continue;
+			Interval interval = new Interval();
+			interval.nodeA = nodeA;
+			interval.nodeB = nodeB;
+			interval.start = start*resolution;
+			interval.end = end*resolution;
+			result.add(interval);
+		}
+	}
+
+	/**
+	 * Decodes a variable-length integer and advances the position
+	 */
+	static long readVarLong(byte[] data, int[] position) {
+		long value = 0;
+		for (int shift=0; ; shift+=7) {
+			byte b = data[position[0]++];
+			value|=(long)(b & 0x7F)<<shift;
+			if (b>=0) return value;
+		}
+	}
+
+	/**
+	 * Closes the file
+	 * @throws IOException If the file cannot be closed
+	 */
+	public void close() throws IOException {
+		file.close();
+	}
+
+}
@@ -40,72 +40,74 @@ import event.*;
 
 /**
  * NAMFormatter outputs mobility traces in the NAM (Network Animator) format.
+ * The node movements are written to a temporary file while the simulation is running. The node declarations
+ * at the beginning of the trace require the identifiers of all nodes, so the trace is assembled at the end
+ * of the simulation.
  * @author psommer
  *
  */
-public final class NAMFormatter extends TraceFormatter {
+public final class NAMFormatter extends TraceFormatter implements EventSink {
 
 	Simulator curSimulation;
+	/** node identifiers of all nodes with events */
+	BitSet nodes = new BitSet();
+	/** temporary file receiving the node mobility traces */
+	File movementFile = null;
+	/** BufferedWriter for the node mobility traces */
+	BufferedWriter movementWriter = null;
+
 	public NAMFormatter(Simulator simulator) {
 		this.curSimulation = simulator;
 	}
 
-	/**
-	 * NodeIdComparator is used to compare nodes based on the node id.
-	 * @author psommer
-	 *
-	 */
-	public class NodeIdComparator implements Comparator<Integer> {
-		/**
-		 * Compares two Integers.
-		 * Returns:<br>
-		 * 0 if both are equal,<br>
-		 * 1 if the first number is bigger,<br>
-		 *  -1 if the second number is bigger.
-		 */
-		public int compare(Integer id1, Integer id2) {
-			if (id1==id2) return 0;
-			else if (id1>id2) return 1;
-			else return -1;
+
+	public void init() {
+		try {
+			movementFile = new File(curSimulation.outputDirectory + "/trace.nam.tmp");
+			movementWriter = new BufferedWriter(new FileWriter(movementFile));
+		} catch (Exception e) {
+			System.err.println(e.getLocalizedMessage());
 		}
 	}
-	
-	
+
+
+	public void addEvent(Event event) {
+
+		// add node id to the set
+		nodes.set(event.node.id);
+
+		// output node mobility traces
+		if (event.type==Event.MOVE) {
+			Move move = (Move) event;
+			try {
+				movementWriter.write("n -t " + move.time + " -s " + move.node.getId() + " -x " + move.x + " -y " + move.y + " -U " + (move.moveToX-move.x)/move.duration + " -V " + (move.moveToY-move.y)/move.duration + " -T " + move.duration + "\n");
+			} catch (Exception e) {
+				System.err.println(e.getMessage());
+			}
+		}
+	}
+
+
 	public void finish() {
-		
+
+		try {
+			movementWriter.close();
+		} catch (Exception e) {
+			System.err.println(e.getMessage());
+		}
+
 		/** BufferedWriter for output */
 		BufferedWriter writer = null;
-		
+
 		try {
 			// initialize output writer
 			writer = new BufferedWriter(new FileWriter(new File(curSimulation.outputDirectory + "/trace.nam")));
 	    } catch (Exception e) {
 	    	System.err.println(e.getLocalizedMessage());
 	    }
-		
-	    /** node id set */
-	    HashSet<Integer> nodes = new HashSet<Integer>();
-		
-	    // sort events by start time
-	    Collections.sort(curSimulation.events, new EventComparatorByStartTime());
-	    
-	    // iteration over all events
-	    Iterator<Event> it = curSimulation.events.iterator();
-	    while (it.hasNext()) {
-	    	Event event = it.next();
-	    	// add new node id to the set
-	    	if (!nodes.contains(event.node.id)) nodes.add(event.node.id);
-	    }
-		
-	    // build sorted list with node identifiers
-	    List<Integer> nodeIdList = new ArrayList<Integer>(nodes);
-	    Collections.sort(nodeIdList, new NodeIdComparator());
-	    
-	    // output node initialization commands
-	    Iterator<Integer> it2 = nodeIdList.iterator();
-	    while (it2.hasNext()) {
-	    	int nodeId = it2.next();
-	    	
+
+	    // output node initialization commands (sorted by node id)
+	    for (int nodeId=nodes.nextSetBit(0); nodeId>=0; nodeId=nodes.nextSetBit(nodeId+1)) {
 	    	try {
 	    		writer.write("n -t * -s " + nodeId + " -x 0.000000 -y 0.000000 -Z 0 -z 20  -v circle -c black\n");
 	    	} catch (Exception e) {
@@ -119,26 +121,23 @@ public final class NAMFormatter extends TraceFormatter {
 		} catch (Exception e) {
 			System.err.println(e.getMessage());
 		}
-		
-		// output node mobility traces
-		
-		it = curSimulation.events.iterator();
-		while (it.hasNext()) {
-			
-			Event temp = it.next();
-			if (temp.type==Event.MOVE) {
-				Move move = (Move) temp;
-				try {
-					writer.write("n -t " + move.time + " -s " + move.node.getId() + " -x " + move.x + " -y " + move.y + " -U " + (move.moveToX-move.x)/move.duration + " -V " + (move.moveToY-move.y)/move.duration + " -T " + move.duration + "\n");
-				} catch (Exception e) {
-					System.err.println(e.getMessage());
-				}
-			}
+
+		// append the node mobility traces
+		Reader reader = null;
+		try {
+			reader = new BufferedReader(new FileReader(movementFile));
+			char[] buffer = new char[65536];
+			int length;
+			while ((length = reader.read(buffer))>0) writer.write(buffer, 0, length);
+		} catch (Exception e) {
+			System.err.println(e.getMessage());
 		}
-		
-		// close output file
+
+		// close output file and remove the temporary file
 		try {
+			if (reader!=null) reader.close();
 			writer.close();
+			movementFile.delete();
 		} catch (Exception e) {
 			System.err.println(e.getMessage());
 		}
@@ -34,8 +34,6 @@ package output;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
-import java.util.Collections;
-import java.util.Iterator;
 
 import simulator.*;
 import event.*;
@@ -43,83 +41,100 @@ import event.*;
 
 /**
  * NS2Formatter generates mobility traces for the NS-2 simulator.
+ * The trace is written while the simulation is running, the events are received in order of their start time.
  * @author psommer
  *
  */
-public class NS2Formatter extends TraceFormatter{
+public class NS2Formatter extends TraceFormatter implements EventSink {
 
 	/** maximum node identifier value */
 	int maxNodeId = 0;
 	Simulator curSimulation;
+	/** buffered output writer */
+	BufferedWriter writer = null;
+	/** trace of the events at the start of the simulation (t=0), held back until the node initialization section is complete */
+	StringBuilder initialEvents = new StringBuilder();
+	/** indicates that the node initialization section has been written */
+	boolean initialized = false;
 
     public NS2Formatter(Simulator simulator) {
     	this.curSimulation = simulator;
     }
 
 
-    public void finish() {
-		
-		/** buffered output writer */
-		BufferedWriter writer = null;
-		
+    public void init() {
 		try {
 			writer = new BufferedWriter(new FileWriter(new File(curSimulation.outputDirectory + "/trace.mov")));
 	    } catch (Exception e) {
 	    	System.err.println(e.getLocalizedMessage());
 	    }
-		
-	    // sort events by start time
-		Collections.sort(curSimulation.events, new EventComparatorByStartTime());
-	    
-	    // output node initialization section (t=0)
-	 	Iterator<Event> it = curSimulation.events.iterator();
-		while (it.hasNext()) {
-			
-			Event event = it.next();
-			
-			if (event.time>0) break;
-			
-			if (event.type==Event.JOIN) {
-				try {
-					writer.write("$node_(" + event.node.getId() + ") set X_ " + event.x + "\n$node_(" + event.node.getId() + ") set Y_ " + event.y + "\n$node_(" + event.node.getId() + ") set Z_ 0.0\n");
-				} catch (Exception e) {
-					System.err.println(e.getMessage());
-				}
-			}
-			
-		}
-	    
-		
-		
-		// iteration over all events
-		it = curSimulation.events.iterator();
-		while (it.hasNext()) {
-			
-			Event event = it.next();
-			
-			if (event.type==Event.MOVE) {
-				Move move = (Move) event;
-				try {
-					writer.write("$ns_ at " + move.time + " \"$node_(" + (move.node.getId()-1) + ") setdest  " + move.moveToX + " " + move.moveToY + " " + move.velocity + "\"\n");
-				} catch (Exception e) {
-					System.err.println(e.getMessage());
-				}
-			} else if (event.type==Event.JOIN) {
-				try {
-					writer.write("$ns_ at " + event.time + " \"$node_(" + (event.node.getId()-1) + ") on\"\n");
-				} catch (Exception e) {
-					System.err.println(e.getMessage());
-				}
-			} else if (event.type==Event.LEAVE) {
-				try {
-					writer.write("$ns_ at " + event.time + " \"$node_(" + (event.node.getId()-1) + ") off\"\n");
-				} catch (Exception e) {
-					System.err.println(e.getMessage());
-				}
-			}
-			
+    }
+
+
+    public void addEvent(Event event) {
+    	String line = format(event);
+    	if (!initialized) {
+    		if (event.time<=0) {
+    			// output node initialization section (t=0)
+    			if (event.type==Event.JOIN) {
+    				try {
+    					writer.write("$node_(" + event.node.getId() + ") set X_ " + event.x + "\n$node_(" + event.node.getId() + ") set Y_ " + event.y + "\n$node_(" + event.node.getId() + ") set Z_ 0.0\n");
+    				} catch (Exception e) {
+    					System.err.println(e.getMessage());
+    				}
+    			}
+    			// the events at the start of the simulation follow the initialization section
+    			if (line!=null) initialEvents.append(line);
+    			return;
+    		}
+    		writeInitialEvents();
+    	}
+    	if (line!=null) {
+    		try {
+    			writer.write(line);
+    		} catch (Exception e) {
+    			System.err.println(e.getMessage());
+    		}
+    	}
+    }
+
+
+    /**
+     * Writes the events at the start of the simulation after the node initialization section
+     */
+    void writeInitialEvents() {
+    	initialized = true;
+    	try {
+    		writer.append(initialEvents);
+    	} catch (Exception e) {
+    		System.err.println(e.getMessage());
+    	}
+    	initialEvents = null;
+    }
+
+
+    /**
+     * Formats an event
+     * @param event Event
+     * @return Line of the trace or null if the event does not appear in the trace
+     */
+    String format(Event event) {
+		if (event.type==Event.MOVE) {
+			Move move = (Move) event;
+			return "$ns_ at " + move.time + " \"$node_(" + (move.node.getId()-1) + ") setdest  " + move.moveToX + " " + move.moveToY + " " + move.velocity + "\"\n";
+		} else if (event.type==Event.JOIN) {
+			return "$ns_ at " + event.time + " \"$node_(" + (event.node.getId()-1) + ") on\"\n";
+		} else if (event.type==Event.LEAVE) {
+			return "$ns_ at " + event.time + " \"$node_(" + (event.node.getId()-1) + ") off\"\n";
 		}
-		
+		return null;
+    }
+
+
+    public void finish() {
+
+    	if (!initialized) writeInitialEvents();
+
 		// close output file
 		try {
 			writer.close();
@@ -42,45 +42,51 @@ import model.*;
 
 /**
  * PDFFormatter outputs mobility traces as lines on a page for each node in a PDF file.
+ * The events are collected in a disk-backed event log which groups them by node.
  * @author psommer
  *
  */
-public class PDFFormatter extends TraceFormatter {
+public class PDFFormatter extends TraceFormatter implements EventSink {
 
 	Simulator curSimulation;
+	/** events sorted by node identifier and start time */
+	EventLog events = null;
+	
 	public PDFFormatter(Simulator simulator) {
 		this.curSimulation = simulator;
 	}
 
+	public void init() {
+		events = new EventLog(new File(curSimulation.outputDirectory), EventLog.BY_NODE);
+	}
+
+	public void addEvent(Event event) {
+		events.addEvent(event);
+	}
+
 	public void finish() {
 		
 		
 		// create a PDFOutput instance
 		PDFOutput pdf = new PDFOutput(new File(curSimulation.outputDirectory + "/trace.pdf"), curSimulation.size);
 		
-		// sort all events by node identifier and event start time
-		Collections.sort(curSimulation.events, new EventComparatorByNodeIdByStartTime());
-		
-		// draw paths of all nodes
-		Iterator<Event> it = curSimulation.events.iterator();
+		// draw paths of all nodes (events sorted by node identifier and event start time)
+		EventLog.Cursor event = events.cursor();
 		// identifier of the previous node
 		int previousNodeId = -1;
 		
-		while (it.hasNext()) {
-			
-			Event event = it.next();
+		while (event.next()) {
 			
-			if (event.node.id!=previousNodeId) {
+			if (event.node!=previousNodeId) {
 				// next node
 				if (previousNodeId!=-1) pdf.newPage();
 				pdf.drawBorder(2, 2);
-				pdf.drawText(0, curSimulation.size + 20, "Node: " + event.node.id, Color.BLACK, 12f);
-				previousNodeId = event.node.id;
+				pdf.drawText(0, curSimulation.size + 20, "Node: " + event.node, Color.BLACK, 12f);
+				previousNodeId = event.node;
 			}
 			
 			if (event.type==Event.MOVE) {
-				Move temp = (Move) event;
-				Line line = new Line(temp.x, temp.y, temp.moveToX, temp.moveToY);
+				Line line = new Line(event.x, event.y, event.toX, event.toY);
 				pdf.drawLine(line, Color.BLACK, 1f);
 			} else if (event.type==Event.JOIN) {
 				pdf.drawCircle(event.x, event.y, Color.BLACK, 1f);
@@ -92,6 +98,7 @@ public class PDFFormatter extends TraceFormatter {
 		
 		// close pdf
 		pdf.close();
+		events.close();
 		
 	}
 	
@@ -38,7 +38,6 @@ import java.util.*;
 
 import simulator.*;
 import event.*;
-import model.Position;
 
 
 /**
@@ -46,55 +45,33 @@ import model.Position;
  * Additionally, a file defining network interface failures is created.
  * The network interface of a node is set to failed during these time 
  * periods the mobile node is not inside the simulation area.
+ * The events are processed while the simulation is running. The waypoints are kept in a disk-backed event log
+ * which sorts them by node.
  * @author psommer
  *
  */
-public class QualnetFormatter extends TraceFormatter {
+public class QualnetFormatter extends TraceFormatter implements EventSink {
 
 	Simulator curSimulator;
 	public QualnetFormatter(Simulator simulator) {
 		this.curSimulator = simulator;
 	}
 
-	/**
-	 * Waypoint describes the position of a mobile node at a certain time during the Simulator.
-	 * @author psommer
-	 *
-	 */
-	private class Waypoint extends Position implements Comparable<Waypoint> {
-		/** node identifier */
-		int id = 0;
-		/** time when the node is at this point */
-		double time = 0;
-		
-		/**
-		 * Creates a Waypoint instance
-		 * @param id Node identifier
-		 * @param time Time
-		 * @param x x position
-		 * @param y y position
-		 */
-		public Waypoint(int id, double time, double x, double y) {
-			this.id = id;
-			this.time = time;
-			this.x = x;
-			this.y = y;
-		}
-		/**
-		 * Compares this Waypoint with another Waypoint.
-		 * First, the node identifier is compared and then the time is compared in a second step (if necessary).
-		 */
-		public int compareTo(Waypoint other) {
-			// sort by node id and time
-			if (id==other.id) {
-				return Double.compare(time, other.time);
-			} else return id-other.id;
-		}
-	}
+	/** waypoints sorted by node id and time (node=Qualnet node id) */
+	EventLog waypoints = null;
+	
+	/** buffered output writers */
+	BufferedWriter traceWriter = null, failureWriter = null;
 	
+	/** nodes which have left the simulation area and can be reused (node=Qualnet node id) */
+	LinkedList<EventLog.Record> reusableNodes = new LinkedList<EventLog.Record>();
+	/** mapping from node identifiers to Qualnet node identifiers */
+	Hashtable<Integer, Integer> nodeMapping = new Hashtable<Integer, Integer>();
 	
-	/** list of waypoints */
-	List<Waypoint> waypoints = new LinkedList<Waypoint>();
+	/** time after which a Qualnet node can be reused */
+	double reuseAfterTime = 30;
+	/** number of Qualnet nodes */
+	int uniqueNodes = 0;
 	
 	/**
 	 * Converts a node identifier to an IPv4 address.
@@ -110,17 +87,7 @@ public class QualnetFormatter extends TraceFormatter {
 	}
 		
 	
-	public void finish() {
-		
-		
-		/** buffered output writer */
-		BufferedWriter traceWriter = null, failureWriter = null;
-		
-		LinkedList<Waypoint> reusableNodes = new LinkedList<Waypoint>();
-		Hashtable<Integer, Integer> nodeMapping = new Hashtable<Integer, Integer>();
-		
-		double reuseAfterTime = 30;
-		int uniqueNodes = 0;
+	public void init() {
 		
 		try {
 			File dir = new File(curSimulator.outputDirectory);
@@ -143,88 +110,104 @@ public class QualnetFormatter extends TraceFormatter {
 	    } catch (Exception e) {
 	    	System.err.println(e.getLocalizedMessage());
 	    }
+		
+		waypoints = new EventLog(new File(curSimulator.outputDirectory), EventLog.BY_NODE);
+	}
+	
+	
+	/**
+	 * Adds a waypoint
+	 * @param id Qualnet node identifier
+	 * @param time Time when the node is at this point
+	 * @param x x position
+	 * @param y y position
+	 */
+	void addWaypoint(int id, double time, double x, double y) {
+		waypoints.add(time, 0, id, -1, x, y, x, y, 0);
+	}
+	
+	
+	public void addEvent(Event event) {
 	    
-	    
-	    // sort events by node id and time
-	    Collections.sort(curSimulator.events, new EventComparatorByStartTime());
-	    
+		// events are received in order of their start time
 	    int nodeIdTemp = 0;
-	    
-	    // iteration over all events
-	    Iterator<Event> it = curSimulator.events.iterator();
-	    while (it.hasNext()) {
 	    	
-	    	Event event = it.next();
-	    	
-	    	if (event.type==Event.MOVE) {
-				Move move = (Move) event;
-				nodeIdTemp = nodeMapping.get(event.node.id);
-				waypoints.add(new Waypoint(nodeIdTemp, move.time, move.x, move.y));
-				waypoints.add(new Waypoint(nodeIdTemp, (move.time + move.duration), move.moveToX, move.moveToY));
+    	if (event.type==Event.MOVE) {
+			Move move = (Move) event;
+			nodeIdTemp = nodeMapping.get(event.node.id);
+			addWaypoint(nodeIdTemp, move.time, move.x, move.y);
+			addWaypoint(nodeIdTemp, (move.time + move.duration), move.moveToX, move.moveToY);
+		
+    	} else if (event.type==Event.JOIN) {
 			
-	    	} else if (event.type==Event.JOIN) {
+			if (!reusableNodes.isEmpty() && (reusableNodes.peek().time + reuseAfterTime)<event.time) {
+				
+				// reuse node
 				
-				if (!reusableNodes.isEmpty() && (reusableNodes.peek().time + reuseAfterTime)<event.time) {
-					
-					// reuse node
-					
-					// add mapping
-					Waypoint leavePoint = reusableNodes.poll();
-					
-					
-					nodeIdTemp = leavePoint.id;
-					nodeMapping.put(event.node.id, nodeIdTemp);
-					
-					//System.out.println(event.node.id + " maps to qualnet node: " + nodeIdTemp);
-					//System.out.println("Reuse qualnet node " + nodeIdTemp + " at: " + event.time);
-					
-					waypoints.add(new Waypoint(nodeIdTemp, event.time, event.x, event.y));
-					
+				// add mapping
+				EventLog.Record leavePoint = reusableNodes.poll();
+				
+				
+				nodeIdTemp = leavePoint.node;
+				nodeMapping.put(event.node.id, nodeIdTemp);
+				
+				//System.out.println(event.node.id + " maps to qualnet node: " + nodeIdTemp);
+				//System.out.println("Reuse qualnet node " + nodeIdTemp + " at: " + event.time);
+				
+				addWaypoint(nodeIdTemp, event.time, event.x, event.y);
+				
+				try {
+					failureWriter.write("INTERFACE-FAULT " + getIPAddress(nodeIdTemp) + " " + String.format("%.2f", leavePoint.time) + "S " + String.format("%.2f", event.time) + "S\n");
+				} catch (Exception e) {
+					System.err.println(e.getMessage());
+				}
+				
+				
+			} else {
+				uniqueNodes++;
+				nodeIdTemp = uniqueNodes;
+				// add new node
+				nodeMapping.put(event.node.id, nodeIdTemp);
+				
+				if (event.time>0) {
 					try {
-						failureWriter.write("INTERFACE-FAULT " + getIPAddress(nodeIdTemp) + " " + String.format("%.2f", leavePoint.time) + "S " + String.format("%.2f", event.time) + "S\n");
+						failureWriter.write("INTERFACE-FAULT " + getIPAddress(nodeIdTemp) + " 0S " + String.format("%.2f", event.time) + "S\n");
 					} catch (Exception e) {
 						System.err.println(e.getMessage());
 					}
-					
-					
-				} else {
-					uniqueNodes++;
-					nodeIdTemp = uniqueNodes;
-					// add new node
-					nodeMapping.put(event.node.id, nodeIdTemp);
-					
-					if (event.time>0) {
-						try {
-							failureWriter.write("INTERFACE-FAULT " + getIPAddress(nodeIdTemp) + " 0S " + String.format("%.2f", event.time) + "S\n");
-						} catch (Exception e) {
-							System.err.println(e.getMessage());
-						}
-					}
-					
-					
 				}
 				
-				waypoints.add(new Waypoint(nodeIdTemp, event.time, event.x, event.y));
-				
-			} else if (event.type==Event.LEAVE) {
-				nodeIdTemp = nodeMapping.get(event.node.id);
-				// node leaves the simulation area -> re-use node in qualnet to keep the total number of nodes low
 				
-				// add point and time where this node left the simulation area
-				reusableNodes.addLast(new Waypoint(nodeIdTemp, event.time, event.x, event.y));
 			}
-	    	
-	    }
-	    
-	    Iterator<Waypoint> itWay = reusableNodes.iterator();
+			
+			addWaypoint(nodeIdTemp, event.time, event.x, event.y);
+			
+		} else if (event.type==Event.LEAVE) {
+			nodeIdTemp = nodeMapping.get(event.node.id);
+			// node leaves the simulation area -> re-use node in qualnet to keep the total number of nodes low
+			
+			// add point and time where this node left the simulation area
+			EventLog.Record exitPoint = new EventLog.Record();
+			exitPoint.node = nodeIdTemp;
+			exitPoint.time = event.time;
+			exitPoint.x = event.x;
+			exitPoint.y = event.y;
+			reusableNodes.addLast(exitPoint);
+		}
+	}
+	
+	
+	public void finish() {
+		
+	    Iterator<EventLog.Record> itWay = reusableNodes.iterator();
 	    
 	    while (itWay.hasNext()) {
 	    	
-	    	Waypoint exitPoint = itWay.next();
+	    	EventLog.Record exitPoint = itWay.next();
 	    	
 	    	if (exitPoint.time<curSimulator.duration) {
 				try {
-					failureWriter.write("INTERFACE-FAULT " + getIPAddress(exitPoint.id) + " " + String.format("%.2f", exitPoint.time) + "S " + String.format("%.2f", curSimulator.duration) + "S\n");
+					failureWriter.write("INTERFACE-FAULT " + getIPAddress(exitPoint.node) + " " + String.format("%.2f", exitPoint.time) + "S " + String.format("%.2f", curSimulator.duration) + "S\n");
 				} catch (Exception e) {
 					System.err.println(e.getMessage());
 				}
@@ -241,35 +224,35 @@ public class QualnetFormatter extends TraceFormatter {
 	    
 	    
 	    
-	    // sort waypoints by node id and time
-		Collections.sort(waypoints);
-		
-		// iteration over all waypoints
-		Iterator<Waypoint> it2 = waypoints.iterator();
-		Waypoint previous = null;
+	    // iteration over all waypoints sorted by node id and time
+		EventLog.Cursor current = waypoints.cursor();
+		boolean first = true;
+		int previousId = 0;
+		double previousTime = 0;
 		
-		while (it2.hasNext()) {
+		while (current.next()) {
 			
-			Waypoint current = it2.next();
-			if (previous==null || !(previous.id==current.id && Math.abs(previous.time-current.time)<0.01)) {
+			if (first || !(previousId==current.node && Math.abs(previousTime-current.time)<0.01)) {
 				
-				if (previous==null || (previous.id!=current.id)) {
+				if (first || (previousId!=current.node)) {
 					// first waypoint of a new node
 					try {
 						// set initial position to the first postion in the simulation area
-						if (current.time>0) traceWriter.write(String.format("%d %.2fS (%.2f, %.2f, %.2f)\n", current.id, 0.0, current.x, current.y , 0.0000));
+						if (current.time>0) traceWriter.write(String.format("%d %.2fS (%.2f, %.2f, %.2f)\n", current.node, 0.0, current.x, current.y , 0.0000));
 					} catch (Exception e) {
 						System.err.println(e.getMessage());
 					}
 				}
 				
 				try {
-					traceWriter.write(String.format("%d %.2fS (%.2f, %.2f, %.2f)\n", current.id, current.time, current.x, current.y , 0.0000));
+					traceWriter.write(String.format("%d %.2fS (%.2f, %.2f, %.2f)\n", current.node, current.time, current.x, current.y , 0.0000));
 				} catch (Exception e) {
 					System.err.println(e.getMessage());
 				}
 			} 
-			previous = current;
+			first = false;
+			previousId = current.node;
+			previousTime = current.time;
 		}
 		
 		try {
@@ -277,6 +260,7 @@ public class QualnetFormatter extends TraceFormatter {
 		} catch (Exception e) {
 			System.err.println(e.getMessage());
 		}
+		waypoints.close();
 		
 		
 	    
@@ -37,32 +37,43 @@ import java.util.logging.*;
 import com.google.common.io.LittleEndianDataInputStream;
 import com.google.common.io.LittleEndianDataOutputStream;
 import event.Event;
-import event.Move;
-import event.Pause;
+import event.EventLog;
+import event.EventSink;
 import simulator.*;
 
 /**
  * XMLFormatter generates a XML file with mobility traces.
+ * The events are collected in a disk-backed event log which groups them by node.
  *
  * @author psommer
  */
-public class XMLFormatter extends TraceFormatter {
+public class XMLFormatter extends TraceFormatter implements EventSink {
 
     private final String fileName = "/trace-" + Thread.currentThread().getName() + ".xml";
 
     private final Logger logger =
             Logger.getLogger(this.getClass().getSimpleName());
     Simulator curSimulation;
+    /** events sorted by node identifier and start time */
+    EventLog events = null;
 
     public XMLFormatter(Simulator simulator) {
         System.out.println("Init XMLFORMATTER");
         this.curSimulation = simulator;
     }
 
+    public void init() {
+        events = new EventLog(new File(curSimulation.outputDirectory), EventLog.BY_NODE);
+    }
+
+    public void addEvent(Event event) {
+        events.addEvent(event);
+    }
+
     public void finish() {
 
-        // sort all events by node identifier and start time
-        Collections.sort(curSimulation.events, new EventComparatorByNodeIdByStartTime());
+        // all events sorted by node identifier and start time
+        EventLog.Cursor event = events.cursor();
 
         try {
             LittleEndianDataOutputStream dataOutput = new LittleEndianDataOutputStream(new FileOutputStream(curSimulation.outputDirectory + fileName));
@@ -81,32 +92,19 @@ public class XMLFormatter extends TraceFormatter {
 
             // output paths of all nodes
             ArrayList<Double> paths = new ArrayList<>();
-            System.out.println("Event Size " + curSimulation.events.size());
+            System.out.println("Event Size " + events.size());
             int numFound = 0;
             for (int i = 0; i < duration; i++) {
 //                System.out.println("Current Iteration " + i);
 //                System.out.println("Current numFound " + numFound);
-                int j = 0;
-                int lookfor = i;
-                //passing through all events
-                for (Event event : curSimulation.events) {
-                    if (j == lookfor) {
-                        numFound += 1;
-                        if (event.type == Event.MOVE) {
-                            Move temp = (Move) event;
-//                            System.out.println(temp.moveToX);
-                            dataOutput.writeDouble(temp.moveToX);
-                            dataOutput.writeDouble(temp.moveToY);
-                        }
-//                        else if (event.type == Event.PAUSE) {
-//                            Pause temp = (Pause) event;
-//                            dataOutput.writeDouble(temp.x);
-//                            dataOutput.writeDouble(temp.y);
-//                        }
-                        lookfor += duration;
-//                        System.out.println("Looking for " + lookfor);
+                //passing through the events i, i+duration, i+2*duration, ...
+                for (long j = i; j < events.size(); j += duration) {
+                    event.seek(j);
+                    numFound += 1;
+                    if (event.type == Event.MOVE) {
+                        dataOutput.writeDouble(event.toX);
+                        dataOutput.writeDouble(event.toY);
                     }
-                    j++;
                 }
                 //modified to dump by epoch
                 //two options 1) distributed system spark job to combine all the files
@@ -130,6 +128,7 @@ public class XMLFormatter extends TraceFormatter {
         } catch (Exception e) {
             System.err.println(e.getMessage());
         }
+        events.close();
 
         try {
             LittleEndianDataInputStream dataInput = new LittleEndianDataInputStream(new FileInputStream(curSimulation.outputDirectory + fileName));
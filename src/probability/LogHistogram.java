@@ -0,0 +1,168 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+package probability;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * LogHistogram summarizes a stream of non-negative values in a fixed number of logarithmically spaced bins.
+ * Bin k contains the values in (gamma^(k-1), gamma^k] with gamma=(1+accuracy)/(1-accuracy), so every quantile
+ * is returned with a relative error of at most the given accuracy, independent of the number of values.
+ * Values below the minimum value are counted in a separate bin, values above the maximum value in the last bin.
+ */
+public class LogHistogram {
+
+	/** base of the bins */
+	double gamma = 0;
+	double logGamma = 0;
+	/** bin index of the minimum value */
+	int offset = 0;
+	/** number of values in each bin */
+	long[] counts = null;
+	/** number of values below the minimum value */
+	long lowCount = 0;
+	/** smallest value of the range */
+	double minValue = 0;
+
+	/** number of values */
+	long count = 0;
+	/** sum of the values */
+	double sum = 0;
+	/** smallest and largest value */
+	double min = Double.POSITIVE_INFINITY;
+	double max = Double.NEGATIVE_INFINITY;
+
+
+	/**
+	 * Creates an empty histogram
+	 * @param accuracy Relative accuracy of the quantiles (e.g. 0.01)
+	 * @param minValue Smallest value distinguished from zero
+	 * @param maxValue Largest value
+	 */
+	public LogHistogram(double accuracy, double minValue, double maxValue) {
+		this.minValue = minValue;
+		gamma = (1 + accuracy)/(1 - accuracy);
+		logGamma = Math.log(gamma);
+		offset = getIndex(minValue);
+		counts = new long[getIndex(maxValue) - offset + 1];
+	}
+
+	/**
+	 * Returns the (unshifted) bin index of a value
+	 */
+	int getIndex(double value) {
+		return (int)Math.ceil(Math.log(value)/logGamma);
+	}
+
+	/**
+	 * Adds a value
+	 * @param value Value (non-negative)
+	 */
+	public void add(double value) {
+		count++;
+		sum+=value;
+		if (value<min) min = value;
+		if (value>max) max = value;
+		if (value<minValue) {
+			lowCount++;
+		} else {
+			counts[Math.min(getIndex(value) - offset, counts.length-1)]++;
+		}
+	}
+
+	/**
+	 * Returns the number of values
+	 * @return Number of values
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the mean of the values
+	 * @return Mean or NaN if the histogram is empty
+	 */
+	public double getMean() {
+		return sum/count;
+	}
+
+	/**
+	 * Returns the smallest value
+	 * @return Minimum
+	 */
+	public double getMin() {
+		return min;
+	}
+
+	/**
+	 * Returns the largest value
+	 * @return Maximum
+	 */
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * Returns an estimate of a quantile
+	 * @param q Quantile (0..1)
+	 * @return Value of the quantile or NaN if the histogram is empty
+	 */
+	public double getQuantile(double q) {
+		if (count==0) return Double.NaN;
+		long rank = (long)Math.floor(q*(count-1));
+		if (rank<lowCount) return min;
+		long seen = lowCount;
+		for (int i=0; i<counts.length; i++) {
+			seen+=counts[i];
+			if (seen>rank) {
+				// center of the bin with respect to the relative error
+				double value = 2*Math.pow(gamma, i + offset)/(gamma + 1);
+				return Math.max(min, Math.min(max, value));
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Writes the complementary cumulative distribution function at the upper bounds of the non-empty bins
+	 * @param writer Writer receiving one line per bin (value P[X>value])
+	 * @throws IOException
+	 */
+	public void writeCCDF(Writer writer) throws IOException {
+		long seen = lowCount;
+		if (lowCount>0) writer.write(minValue + " " + (double)(count - seen)/count + "\n");
+		for (int i=0; i<counts.length; i++) {
+			if (counts[i]==0) continue;
+			seen+=counts[i];
+			writer.write(Math.pow(gamma, i + offset) + " " + (double)(count - seen)/count + "\n");
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+
+package probability;
+
+import java.util.SplittableRandom;
+
+/**
+ * RandomStreams derives independent random number streams from the seed of a simulation.
+ * Each stream is identified by a purpose (e.g. the random decisions of a node) and an index (e.g. the node
+ * identifier), and its seed is obtained by mixing the simulation seed, the purpose and the index with the
+ * SplitMix64 finalizer. The sequence of a stream therefore only depends on the simulation seed and its key,
+ * but not on the order in which streams are created or used. Streams are not shared, so that drawing
+ * random numbers requires no synchronization.
+ */
+public class RandomStreams {
+
+	/** stream for the random decisions of a node (index=node identifier) */
+	public static final int NODE = 1;
+	/** stream for the initialization of a mobility model (index=0) */
+	public static final int MODEL = 2;
+	/** stream for the samples of a distribution (index=distribution specific) */
+	public static final int DISTRIBUTION = 3;
+
+	/** seed of the simulation */
+	long seed = 0;
+
+
+	/**
+	 * Creates the stream hierarchy for the given simulation seed
+	 * @param seed Simulation seed
+	 */
+	public RandomStreams(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Returns a new random number generator for the given stream
+	 * @param purpose Purpose of the stream
+	 * @param index Index of the stream
+	 * @return Random number generator
+	 */
+	public SplittableRandom stream(int purpose, long index) {
+		return new SplittableRandom(key(seed, purpose, index));
+	}
+
+	/**
+	 * Calculates the seed of a stream
+	 * @param seed Simulation seed
+	 * @param purpose Purpose of the stream
+	 * @param index Index of the stream
+	 * @return Seed of the stream
+	 */
+	public static long key(long seed, int purpose, long index) {
+		return mix(mix(mix(seed) + purpose) + index);
+	}
+
+	/**
+	 * SplitMix64 finalizer
+	 * @param z Value
+	 * @return Mixed value
+	 */
+	static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+}
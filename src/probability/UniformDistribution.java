@@ -35,14 +35,14 @@ import java.util.*;
 
 /**
  * UniformDistribution generates samples of a uniform distributed random variable X.
- * The Java Random number generator (java.util.Random) is used to generate the sample values.
+ * Sample values are generated by a splittable random number generator (java.util.SplittableRandom).
  * @author psommer
  *
  */
 public class UniformDistribution implements Distribution {
 
 	/** Random number generator */
-	Random rng = null;
+	SplittableRandom rng = null;
 	/** minimum value */
 	double min = 0;
 	/** maximum value */
@@ -56,7 +56,7 @@ public class UniformDistribution implements Distribution {
 	 */
 	public UniformDistribution(double min, double max, long seed) {
 		// initialize random number generator
-		rng = new Random(seed);
+		rng = new SplittableRandom(seed);
 		// set min value
 		this.min = min;
 		// set max value
@@ -72,6 +72,10 @@ public class UniformDistribution implements Distribution {
 	}
 	
 	public double nextValue() {
+		return nextValue(rng);
+	}
+	
+	public double nextValue(SplittableRandom rng) {
 		return min + rng.nextDouble()*(max-min);
 	}
 	
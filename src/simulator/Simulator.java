@@ -36,7 +36,7 @@ package simulator;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 
-import event.Event;
+import event.*;
 import gui.GUI;
 import output.*;
 import mobility.*;
@@ -46,6 +46,13 @@ import mobility.mmts.MMTSModel;
 import mobility.rwp.RandomWaypointModel;
 import mobility.fixed.FixedModel;
 import model.*;
+import network.ComponentTracker;
+import network.ContactStatistics;
+import network.HopDistanceModule;
+import network.InterferenceModel;
+import network.LinkEventGenerator;
+import network.NeighborhoodModule;
+import probability.RandomStreams;
 
 
 public class Simulator implements Runnable  {
@@ -65,8 +72,8 @@ public class Simulator implements Runnable  {
 	/** list modules attached to the simulator */
 	LinkedList<Module> modules = new LinkedList<Module>();
 
-	/** random number generator */
-	public Random rng = new Random();
+	/** random number streams derived from the simulation seed */
+	public RandomStreams randomStreams = new RandomStreams(0);
 
 	/** simulation parameters */
 	public Properties parameters = new Properties();
@@ -82,8 +89,12 @@ public class Simulator implements Runnable  {
 	public double time = 0;
 	/** size of a sample step */
 	public double step = 1.0;
+	/** time between two samples in the generated traces */
+	public double outputStep = 1.0;
 	/** number of samples */
 	public int samples = 0;
+	/** number of steps performed by the mobility model in the warm-up phase */
+	public int warmupSteps = 0;
 
 	/** number of (unique) nodes in the simulation */
 	public int uniqueNodes = 0;
@@ -96,10 +107,18 @@ public class Simulator implements Runnable  {
 
 	/** nodes participating in the simulation */
 	public ArrayList<MobileNode> nodes = new ArrayList<MobileNode>();
-	/** node events */
+	/** node events (only collected if an output module needs all events at the end of the simulation) */
 	public ArrayList<Event> events = new ArrayList<Event>();
+	/** indicates that all events are collected in the events list */
+	public boolean storeEvents = false;
+	/** buffer delivering the events in order to streaming output modules during the simulation */
+	public EventReorderBuffer eventBuffer = new EventReorderBuffer();
 	/** graph representing the neighborhood relations between nodes */
 	public Graph neighborhoodGraph = new Graph();
+	/** generator of the exact link events (null if disabled) */
+	public LinkEventGenerator linkEvents = null;
+	/** index over the obstacles of the map (null if the mobility model has no obstacles) */
+	public ObstacleIndex obstacles = null;
 
 	/** seed for the random number generators */
 	public long seed = 0;
@@ -172,6 +191,25 @@ public class Simulator implements Runnable  {
 		}
 
 
+		if (parameters.containsKey("STEP")) {
+			try {
+				step = Double.valueOf(parameters.getProperty("STEP"));
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter STEP: " + e.getMessage());
+			}
+		}
+
+
+		outputStep = step;
+		if (parameters.containsKey("OUTPUT_STEP")) {
+			try {
+				outputStep = Double.valueOf(parameters.getProperty("OUTPUT_STEP"));
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter OUTPUT_STEP: " + e.getMessage());
+			}
+		}
+
+
 		if (parameters.containsKey("SEED")) {
 			try {
 				seed = Long.valueOf(parameters.getProperty("SEED"));
@@ -181,8 +219,9 @@ public class Simulator implements Runnable  {
 		}
 
 
-		// initialize random number generator
-		rng = new Random(seed);
+		// initialize random number streams
+		randomStreams = new RandomStreams(seed);
+
 
 		// initialize mobility model
 		if (parameters.containsKey("MODEL")) {
@@ -207,6 +246,56 @@ public class Simulator implements Runnable  {
 		}
 
 
+		// radio parameters
+		double range = getDouble("RANGE", 0);
+		double kineticInterval = getDouble("KINETIC_INTERVAL", 0);
+		// the SINR model is used if a valid threshold is given
+		double sinrThreshold = getDouble("SINR_THRESHOLD", Double.NaN);
+		double pathLossExponent = getDouble("PATH_LOSS_EXPONENT", 3);
+		double transmitPower = getDouble("TRANSMIT_POWER", 20);
+		double noisePower = getDouble("NOISE_POWER", -100);
+		double transmitActivity = getDouble("TRANSMIT_ACTIVITY", 1);
+		double interferenceCutoff = getDouble("INTERFERENCE_CUTOFF", 0);
+		boolean shadowing = (1==getInt("SHADOWING", 0));
+		boolean components = (1==getInt("COMPONENTS", 0));
+		int hopDistanceInterval = getInt("HOP_DISTANCE", 0);
+		double contactRange = getDouble("CONTACT_RANGE", 0);
+		boolean contactStatistics = (1==getInt("CONTACT_STATISTICS", 0));
+		boolean contactGraph = (1==getInt("CONTACT_GRAPH", 0));
+
+		// neighborhood graph (updated before the output modules)
+		if (range>0) {
+			NeighborhoodModule neighborhood = new NeighborhoodModule(this, range, kineticInterval);
+			modules.add(neighborhood);
+			if (!Double.isNaN(sinrThreshold)) {
+				neighborhood.setInterferenceModel(new InterferenceModel(sinrThreshold, pathLossExponent, transmitPower, noisePower, transmitActivity, interferenceCutoff));
+			}
+			if (shadowing) neighborhood.setShadowing();
+			if (components) {
+				ComponentTracker tracker = new ComponentTracker(this);
+				neighborhood.addListener(tracker);
+				modules.add(tracker);
+			}
+			if (hopDistanceInterval>0) modules.add(new HopDistanceModule(this, hopDistanceInterval));
+		}
+
+		// link events computed from the node movements
+		if (contactRange>0) {
+			linkEvents = new LinkEventGenerator(this, contactRange);
+			modules.add(linkEvents);
+			if (contactStatistics) {
+				ContactStatistics statistics = new ContactStatistics(this);
+				linkEvents.addListener(statistics);
+				modules.add(statistics);
+			}
+			if (contactGraph) {
+				ContactGraphFormatter formatter = new ContactGraphFormatter(this);
+				linkEvents.addListener(formatter);
+				modules.add(formatter);
+			}
+		}
+
+
 		// initialize traces output module
 		System.out.println("Init SIMULATOR");
 		if (parameters.containsKey("FORMAT")) {
@@ -236,6 +325,17 @@ public class Simulator implements Runnable  {
 
 
 
+		// output modules either receive the events during the simulation or process all events at the end
+		Iterator<Module> moduleIterator = modules.iterator();
+		while (moduleIterator.hasNext()){
+			Module module = moduleIterator.next();
+			if (module instanceof EventSink) eventBuffer.addSink((EventSink)module);
+			else if (module instanceof TraceFormatter) storeEvents = true;
+		}
+		// events are held back as long as earlier events may still be generated (output samples cover several steps)
+		double eventHorizon = Math.max(step, outputStep);
+
+
 		// simulation time settings
 		time = 0;
 		samples = (int)Math.floor((duration)/step);
@@ -245,7 +345,7 @@ public class Simulator implements Runnable  {
 		mobilityModel.init();
 
 		// initialize all modules
-		Iterator<Module> moduleIterator = modules.iterator();
+		moduleIterator = modules.iterator();
 		while (moduleIterator.hasNext()){
 			Module module = moduleIterator.next();
 			module.init();
@@ -266,6 +366,9 @@ public class Simulator implements Runnable  {
 				module.next();
 			}
 
+			// deliver the events which can no longer be preceded by new events
+			eventBuffer.release(time + step - eventHorizon);
+
 			// count average number of nodes
 			avgNodes += nodes.size();
 
@@ -277,6 +380,7 @@ public class Simulator implements Runnable  {
 
 		// simulation finished
 		mobilityModel.finish();
+		eventBuffer.close();
 
 		System.out.println("Everything's done!");
 
@@ -303,6 +407,38 @@ public class Simulator implements Runnable  {
 	}
 
 
+	/**
+	 * Returns the value of a numeric parameter
+	 * @param name Name of the parameter
+	 * @param defaultValue Value if the parameter is not specified or invalid
+	 * @return Value
+	 */
+	double getDouble(String name, double defaultValue) {
+		if (!parameters.containsKey(name)) return defaultValue;
+		try {
+			return Double.valueOf(parameters.getProperty(name));
+		} catch (Exception e) {
+			System.err.println("Error parsing parameter " + name + ": " + e.getMessage());
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Returns the value of an integer parameter
+	 * @param name Name of the parameter
+	 * @param defaultValue Value if the parameter is not specified or invalid
+	 * @return Value
+	 */
+	int getInt(String name, int defaultValue) {
+		if (!parameters.containsKey(name)) return defaultValue;
+		try {
+			return Integer.valueOf(parameters.getProperty(name));
+		} catch (Exception e) {
+			System.err.println("Error parsing parameter " + name + ": " + e.getMessage());
+			return defaultValue;
+		}
+	}
+
 	public void addNode(double time, MobileNode node) {
 		// add a new node to the simulation
 		nodes.add(node);
@@ -333,7 +469,8 @@ public class Simulator implements Runnable  {
 	}
 
 	public void addEvent(Event event) {
-		events.add(event);
+		if (storeEvents) events.add(event);
+		if (eventBuffer.hasSinks()) eventBuffer.add(event);
 	}
 
 	public void start () {
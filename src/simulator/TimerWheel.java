@@ -0,0 +1,149 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+
+package simulator;
+
+import java.util.*;
+
+
+/**
+ * TimerWheel schedules items for expiration after a given number of ticks (hashed timing wheel).
+ * Items are stored in a ring of buckets indexed by their expiration tick, so that scheduling an item
+ * and advancing the wheel by one tick only touch the items of a single bucket. Items expiring later
+ * than one revolution of the wheel remain in their bucket until their expiration tick is reached.
+ * The timers of expired items are reused, so the wheel allocates no memory once the number of scheduled
+ * items has reached its maximum.
+ * @param <T> Type of the scheduled items
+ */
+public class TimerWheel<T> {
+
+	/**
+	 * Item scheduled on the wheel
+	 */
+	static class Timer<T> {
+		T item;
+		long deadline;
+	}
+
+	/** buckets of the wheel */
+	ArrayList<ArrayList<Timer<T>>> buckets;
+	/** mask for the bucket index (number of buckets is a power of two) */
+	int mask;
+	/** current tick */
+	long tick = 0;
+	/** number of scheduled items */
+	int size = 0;
+	/** timers of expired items for reuse */
+	ArrayList<Timer<T>> free = new ArrayList<Timer<T>>();
+
+
+	/**
+	 * Creates a timer wheel
+	 * @param buckets Minimal number of buckets (rounded up to the next power of two)
+	 */
+	public TimerWheel(int buckets) {
+		int n = 1;
+		while (n<buckets) n<<=1;
+		mask = n-1;
+		this.buckets = new ArrayList<ArrayList<Timer<T>>>(n);
+		for (int i=0; i<n; i++) this.buckets.add(new ArrayList<Timer<T>>());
+	}
+
+	/**
+	 * Schedules an item
+	 * @param item Item to schedule
+	 * @param delay Number of ticks until the item expires (at least 1)
+	 */
+	public void schedule(T item, long delay) {
+		if (delay<1) delay = 1;
+		Timer<T> timer = free.isEmpty() ? new Timer<T>() : free.remove(free.size()-1);
+		timer.item = item;
+		timer.deadline = tick + delay;
+		buckets.get((int)(timer.deadline & mask)).add(timer);
+		size++;
+	}
+
+	/**
+	 * Advances the wheel by one tick and collects the expired items
+	 * @param expired List receiving the items expiring at the new tick (in the order they were scheduled)
+	 */
+	public void advance(List<T> expired) {
+		tick++;
+		ArrayList<Timer<T>> bucket = buckets.get((int)(tick & mask));
+		if (bucket.isEmpty()) return;
+
+		// remove expired items and keep the items of later revolutions
+		int kept = 0;
+		for (int i=0; i<bucket.size(); i++) {
+			Timer<T> timer = bucket.get(i);
+			if (timer.deadline==tick) {
+				expired.add(timer.item);
+				timer.item = null;
+				free.add(timer);
+				size--;
+			} else {
+				bucket.set(kept++, timer);
+			}
+		}
+		for (int i=bucket.size()-1; i>=kept; i--) bucket.remove(i);
+	}
+
+	/**
+	 * Removes all scheduled items, their timers are kept for reuse
+	 */
+	public void clear() {
+		for (int b=0; b<buckets.size(); b++) {
+			ArrayList<Timer<T>> bucket = buckets.get(b);
+			for (int i=0; i<bucket.size(); i++) {
+				Timer<T> timer = bucket.get(i);
+				timer.item = null;
+				free.add(timer);
+			}
+			bucket.clear();
+		}
+		size = 0;
+	}
+
+		/**
+	 * Returns the current tick
+	 * @return Number of ticks since the creation of the wheel
+	 */
+	public long getTick() {
+		return tick;
+	}
+
+	/**
+	 * Returns the number of scheduled items
+	 * @return Number of items
+	 */
+	public int size() {
+		return size;
+	}
+
+}
@@ -0,0 +1,113 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*/
+
+package test;
+
+import java.util.Random;
+
+import mobility.gis.IDMKernel;
+
+public class IDMKernelBenchmark {
+
+	/**
+	 * Micro-benchmark for the IDM car-following kernel. Compares the former per-vehicle
+	 * evaluation with Math.pow against the batched kernel and prints the number of
+	 * vehicles processed per second.
+	 * @param args optional number of vehicles
+	 */
+	public static void main(String[] args) {
+
+		int vehicles = 1000000;
+		if (args.length>0) vehicles = Integer.valueOf(args[0]);
+		int rounds = 50;
+
+		// driver parameters of the GIS model
+		double a = 0.6, b = 0.9, s0 = 1, T = 1.0;
+
+		// random vehicle states
+		Random rng = new Random(0);
+		double[] v = new double[vehicles];
+		double[] v0 = new double[vehicles];
+		double[] s = new double[vehicles];
+		double[] dv = new double[vehicles];
+		double[] result = new double[vehicles];
+		for (int i=0; i<vehicles; i++) {
+			v0[i] = 30/3.6 + rng.nextDouble()*90/3.6;
+			v[i] = rng.nextDouble()*v0[i];
+			s[i] = rng.nextDouble()<0.3 ? Double.POSITIVE_INFINITY : 1 + rng.nextDouble()*100;
+			dv[i] = (rng.nextDouble()-0.5)*5;
+		}
+
+		double checksum = 0;
+
+		// warm-up of the JIT compiler
+		for (int r=0; r<rounds; r++) {
+			checksum+=pow(vehicles, v, v0, s, dv, a, b, s0, T, result);
+			IDMKernel.accelerations(vehicles, v, v0, s, dv, a, b, s0, T, result);
+			checksum+=result[r];
+		}
+
+		// per-vehicle evaluation with Math.pow
+		long start = System.nanoTime();
+		for (int r=0; r<rounds; r++) {
+			checksum+=pow(vehicles, v, v0, s, dv, a, b, s0, T, result);
+		}
+		long powTime = System.nanoTime() - start;
+
+		// batched kernel
+		start = System.nanoTime();
+		for (int r=0; r<rounds; r++) {
+			IDMKernel.accelerations(vehicles, v, v0, s, dv, a, b, s0, T, result);
+			checksum+=result[r];
+		}
+		long kernelTime = System.nanoTime() - start;
+
+		double powRate = 1e9*vehicles*rounds/powTime;
+		double kernelRate = 1e9*vehicles*rounds/kernelTime;
+		System.out.println(String.format("Math.pow:      %.3e vehicles/s", powRate));
+		System.out.println(String.format("batched IDM:   %.3e vehicles/s", kernelRate));
+		System.out.println(String.format("speed-up:      %.2f (checksum %.3f)", kernelRate/powRate, checksum));
+	}
+
+	/**
+	 * Per-vehicle evaluation of the IDM as formerly done in NodeGIS.prepare()
+	 */
+	static double pow(int n, double[] v, double[] v0, double[] s, double[] dv, double a, double b, double s0, double T, double[] result) {
+		for (int i=0; i<n; i++) {
+			if (s[i]<Double.POSITIVE_INFINITY) {
+				double s_star = s0 + (v[i]*T + v[i]*dv[i]/(2*Math.sqrt(a*b)));
+				result[i] = a * (1 - Math.pow(v[i]/v0[i], 4) - Math.pow(s_star/s[i], 2));
+			} else {
+				result[i] = a * (1 - Math.pow(v[i]/v0[i], 4));
+			}
+		}
+		return result[n-1];
+	}
+
+}